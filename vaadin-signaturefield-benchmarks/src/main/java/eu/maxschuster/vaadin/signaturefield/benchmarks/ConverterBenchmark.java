@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.benchmarks;
+
+import eu.maxschuster.dataurl.DataUrl;
+import eu.maxschuster.dataurl.DataUrlEncoding;
+import eu.maxschuster.vaadin.signaturefield.converter.StringToByteArrayConverter;
+import eu.maxschuster.vaadin.signaturefield.converter.StringToDataUrlConverter;
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the converters between data url strings and the binary
+ * signature image. The sizes cover a phone, a tablet and a full width
+ * desktop field. Run with {@code -prof gc} to see the allocation rate.
+ *
+ * @author Max Schuster
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+
+    /**
+     * Size of the signature field in pixels
+     */
+    @Param({"300x100", "600x200", "1200x400"})
+    public String size;
+
+    /**
+     * Format of the signature image
+     */
+    @Param({"PNG", "JPEG"})
+    public MimeType mimeType;
+
+    private final MimeTypeGuessingConverter byteArrayConverter
+            = new MimeTypeGuessingConverter();
+
+    private final StringToDataUrlConverter dataUrlConverter
+            = new StringToDataUrlConverter();
+
+    private byte[] image;
+
+    private String dataUrlString;
+
+    private DataUrl dataUrl;
+
+    @Setup
+    public void setUp() {
+        int separator = size.indexOf('x');
+        image = SignatureImages.render(
+                Integer.parseInt(size.substring(0, separator)),
+                Integer.parseInt(size.substring(separator + 1)), mimeType);
+        dataUrl = new DataUrl(image, DataUrlEncoding.BASE64,
+                mimeType.getMimeType());
+        dataUrlString = dataUrlConverter.convertToPresentation(dataUrl,
+                String.class, Locale.ROOT);
+    }
+
+    @Benchmark
+    public byte[] byteArrayConvertToModel() {
+        return byteArrayConverter.convertToModel(dataUrlString, byte[].class,
+                Locale.ROOT);
+    }
+
+    @Benchmark
+    public String byteArrayConvertToPresentation() {
+        return byteArrayConverter.convertToPresentation(image, String.class,
+                Locale.ROOT);
+    }
+
+    @Benchmark
+    public MimeType guessMimeType() throws IOException {
+        return byteArrayConverter.guessMimeType(image);
+    }
+
+    @Benchmark
+    public DataUrl dataUrlConvertToModel() {
+        return dataUrlConverter.convertToModel(dataUrlString, DataUrl.class,
+                Locale.ROOT);
+    }
+
+    @Benchmark
+    public String dataUrlConvertToPresentation() {
+        return dataUrlConverter.convertToPresentation(dataUrl, String.class,
+                Locale.ROOT);
+    }
+
+    /**
+     * Makes {@link StringToByteArrayConverter#guessMimeType(byte[])}
+     * accessible to the benchmark.
+     */
+    static class MimeTypeGuessingConverter extends StringToByteArrayConverter {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected MimeType guessMimeType(byte[] data) throws IOException {
+            return super.guessMimeType(data);
+        }
+
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.benchmarks;
+
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link MimeType} lookups that run for every signature
+ * value.
+ *
+ * @author Max Schuster
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MimeTypeBenchmark {
+
+    /**
+     * MIME-Type known to {@link MimeType}
+     */
+    private static final String KNOWN_MIME_TYPE = "image/png";
+
+    /**
+     * MIME-Types looked up by the non-throwing lookups. The lookup is a hash
+     * lookup, so only a known and an unknown MIME-Type, which misses it, are
+     * compared.
+     */
+    @State(Scope.Benchmark)
+    public static class Lookup {
+
+        @Param({KNOWN_MIME_TYPE, "image/gif"})
+        public String mimeTypeString;
+
+        private String dataUrlString;
+
+        @Setup
+        public void setUp() {
+            dataUrlString = "data:" + mimeTypeString
+                    + ";base64,iVBORw0KGgo=";
+        }
+
+    }
+
+    /**
+     * Only the known MIME-Type, because an unknown one throws
+     */
+    @Benchmark
+    public MimeType valueOfMimeType() {
+        return MimeType.valueOfMimeType(KNOWN_MIME_TYPE);
+    }
+
+    @Benchmark
+    public MimeType fromMimeType(Lookup lookup) {
+        return MimeType.fromMimeType(lookup.mimeTypeString);
+    }
+
+    @Benchmark
+    public MimeType fromDataUrl(Lookup lookup) {
+        return MimeType.fromDataUrl(lookup.dataUrlString);
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.benchmarks;
+
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.CubicCurve2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders reproducible signature-like images, so the benchmarks work with
+ * data that compresses like real signatures instead of random bytes.
+ *
+ * @author Max Schuster
+ */
+final class SignatureImages {
+
+    /**
+     * Number of curves drawn per 100 pixels of width
+     */
+    private static final int CURVES_PER_100PX = 3;
+
+    private SignatureImages() {
+    }
+
+    /**
+     * Renders a signature with black ink on a white background and encodes
+     * it in the given format.
+     *
+     * @param width Width of the image
+     * @param height Height of the image
+     * @param mimeType Format of the image
+     * @return The encoded image
+     */
+    static byte[] render(int width, int height, MimeType mimeType) {
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.setColor(Color.BLACK);
+            g.setStroke(new BasicStroke(2.5f, BasicStroke.CAP_ROUND,
+                    BasicStroke.JOIN_ROUND));
+            Random random = new Random(width * 31L + height);
+            int curves = Math.max(1, width / 100 * CURVES_PER_100PX);
+            double x = width * .1;
+            double y = height * .6;
+            double step = width * .8 / curves;
+            for (int i = 0; i < curves; i++) {
+                double nextX = x + step;
+                double nextY = height * (.3 + random.nextDouble() * .5);
+                g.draw(new CubicCurve2D.Double(x, y,
+                        x + step * random.nextDouble(),
+                        height * random.nextDouble(),
+                        x + step * random.nextDouble(),
+                        height * random.nextDouble(),
+                        nextX, nextY));
+                x = nextX;
+                y = nextY;
+            }
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, mimeType == MimeType.JPEG ? "jpeg" : "png",
+                    out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -21,10 +21,82 @@
  * @property {Element} canvas Canvas
  * @property {Element} clearButton Button that clears the field
  * @property {string} signature Signature data url
+ * @property {number} signatureX Horizontal offset of the signature image
+ * @property {number} signatureY Vertical offset of the signature image
+ * @property {boolean} trimEnabled Crop the image to the bounding box of the ink
+ * @property {number} trimPadding Padding kept around the ink when trimming
+ * @property {Element} exportCanvas Reused canvas the trimmed or resampled
+ * image is copied to
+ * @property {number} cssWidth Width of the canvas in CSS pixels
+ * @property {number} cssHeight Height of the canvas in CSS pixels
+ * @property {number} displayScale Number of canvas pixels per CSS pixel
+ * @property {number} exportX Horizontal offset of the last exported image
+ * @property {number} exportY Vertical offset of the last exported image
  * @property {string} mimeType MIME-Type that determines the format of the signature image
- * @property {SignaturePad} signaturePad SignaturePad instance
+ * @property {number} quality Quality between 0 and 1 used for lossy formats
+ * @property {Object.<string, boolean>} encodableMimeTypes Cache of the
+ * MIME-Types the browser is able to encode
+ * @property {SignaturePad|null} signaturePad SignaturePad instance or null
+ * if the canvas hasn't been created yet
+ * @property {IntersectionObserver|null} initObserver Observes the visibility
+ * of the field until the canvas is created
+ * @property {Array.<Array>} deferredCalls Server-side calls received before
+ * the canvas was created
+ * @property {Array.<Array.<number>>} strokes Recorded strokes in the compact
+ * format [startTime, x, y, dt, pressure, x, y, dt, pressure, ...]
+ * @property {number} strokeWidth Width of the space the strokes are recorded in
+ * @property {number} strokeHeight Height of the space the strokes are recorded
+ * in
+ * @property {Image|null} baseImage Decoded image the strokes are drawn on
+ * @property {number|null} resizeFrame Animation frame of the pending resize
+ * @property {Object|null} pendingSize Size reported by the shared
+ * ResizeObserver that is applied with the next animation frame
+ * @property {number} throttle Minimum time in milliseconds between two points
+ * of a stroke
+ * @property {number} minDistance Minimum distance in CSS pixels between two
+ * points of a stroke
+ * @property {Object|null} lastInput Position and time of the last accepted
+ * point of the current stroke
+ * @property {Object|null} trailingInput Last input dropped by the throttle,
+ * added when the stroke ends
+ * @property {number|null} activePointer Id of the pointer that draws the
+ * current stroke
+ * @property {Array.<Object>} pointerQueue Pointer positions waiting to be
+ * drawn with the next animation frame
+ * @property {number|null} pointerFrame Animation frame of the pending pointer
+ * positions
+ * @property {number} syncedStrokes Number of strokes the server-side already
+ * holds
+ * @property {string} transportMode How the signature is sent to the
+ * server-side, "DATA_URL", "STROKES" or "BINARY"
+ * @property {string|null} signatureToken Content token of the signature the
+ * server-side holds
+ * @property {string|null} baseToken Content token of the image imported from
+ * the server-side
+ * @property {number} importedImages Counter used to create tokens for
+ * imported images without a token
+ * @property {number|null} versionCheck Timer of the pending version check
+ * @property {Object|null} lazyImage Signature image that is loaded once the
+ * field becomes visible
+ * @property {IntersectionObserver|null} lazyObserver Observes the visibility
+ * of the field while an image is waiting to be loaded
+ * @property {boolean} workerEncodingEnabled Encode the signature in a Web
+ * Worker if the browser supports it
+ * @property {boolean} encoding The signature is being encoded in the worker
+ * @property {boolean} encodePending Another update is required after the
+ * current encoding has finished
+ * @property {boolean} uploading A binary upload is in progress
+ * @property {boolean} uploadPending Another binary upload is required after
+ * the current one has finished
  * @property {boolean} immediate Update the signature on the server-side
  * immediately after each pen stroke
+ * @property {number} updateDelay Milliseconds to wait after the last pen
+ * stroke before an immediate update is sent
+ * @property {number|null} updateTimer Timer of the pending delayed update
+ * @property {Function} pageHideHandler Flushes a delayed update when the page
+ * gets unloaded
+ * @property {Function} visibilityHandler Flushes a delayed update when the
+ * page gets hidden
  * @property {boolean} readOnly Field is readonly
  * @author Max Schuster
  * @returns {undefined}
@@ -34,7 +106,131 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
     "use strict";
     
     var defaultMimeType = "image/png",
-            defaultDotSize;
+            defaultTransportMode = "DATA_URL",
+            defaultQuality = 1,
+            fallbackMimeTypes = {
+                "image/avif": ["image/webp", defaultMimeType],
+                "image/webp": [defaultMimeType]
+            },
+            defaultDotSize,
+            /*
+             * Signatures of all extensions of the page by connector id. Kept
+             * across reattaches, so the server-side doesn't have to send them
+             * again.
+             */
+            signatureCache =
+                    eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension
+                    .signatureCache || (
+                    eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension
+                    .signatureCache = {}),
+            /*
+             * Web Worker shared by all extensions of the page that encodes
+             * images with an OffscreenCanvas.
+             */
+            encoder =
+                    eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension
+                    .encoder || (
+                    eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension
+                    .encoder = {
+                        worker: null,
+                        failed: false,
+                        nextId: 0,
+                        callbacks: {}
+                    }),
+            /*
+             * ResizeObserver shared by all extensions of the page. Sizes are
+             * taken from the observer entries and applied to all resized
+             * canvases in one animation frame.
+             */
+            resizeScheduler =
+                    eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension
+                    .resizeScheduler || (
+                    eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension
+                    .resizeScheduler = {
+                        observer: null,
+                        connectors: [],
+                        pending: [],
+                        frame: null
+                    });
+
+    /**
+     * Callback of the shared ResizeObserver. Remembers the new sizes of the
+     * observed fields and schedules them to be applied.
+     * @param {Array.<ResizeObserverEntry>} entries Resized elements
+     * @returns {undefined}
+     */
+    function onSharedResize(entries) {
+        var connectors = resizeScheduler.connectors,
+                pending = resizeScheduler.pending,
+                i, c, rect;
+        for (i = 0; i < entries.length; i++) {
+            for (c = 0; c < connectors.length; c++) {
+                if (connectors[c].parent === entries[i].target) {
+                    rect = entries[i].contentRect;
+                    connectors[c].pendingSize = {
+                        width: Math.floor(rect.width),
+                        height: Math.floor(rect.height)
+                    };
+                    if (pending.indexOf(connectors[c]) < 0) {
+                        pending.push(connectors[c]);
+                    }
+                    break;
+                }
+            }
+        }
+        if (resizeScheduler.frame === null && pending.length > 0) {
+            resizeScheduler.frame =
+                    window.requestAnimationFrame(flushSharedResize);
+        }
+    }
+
+    /**
+     * Applies the pending sizes of all resized fields.
+     * @returns {undefined}
+     */
+    function flushSharedResize() {
+        var pending = resizeScheduler.pending,
+                size, i;
+        resizeScheduler.frame = null;
+        resizeScheduler.pending = [];
+        for (i = 0; i < pending.length; i++) {
+            size = pending[i].pendingSize;
+            pending[i].pendingSize = null;
+            pending[i].setCanvasSize(size.width, size.height);
+        }
+    }
+
+    /**
+     * Entry point of the encoder worker. Runs in the worker, so it must not
+     * use anything from the surrounding scope.
+     * @param {DedicatedWorkerGlobalScope} scope Global scope of the worker
+     * @returns {undefined}
+     */
+    function encoderMain(scope) {
+        scope.onmessage = function (event) {
+            var data = event.data,
+                    bitmap = data.bitmap,
+                    canvas = new OffscreenCanvas(bitmap.width, bitmap.height);
+            canvas.getContext("2d").drawImage(bitmap, 0, 0);
+            bitmap.close();
+            canvas.convertToBlob({
+                type: data.type,
+                quality: data.quality
+            }).then(function (blob) {
+                scope.postMessage({
+                    id: data.id,
+                    blob: data.dataUrl ? null : blob,
+                    dataUrl: data.dataUrl ?
+                            new FileReaderSync().readAsDataURL(blob) : null
+                });
+            }, function (e) {
+                scope.postMessage({
+                    id: data.id,
+                    error: String(e)
+                });
+            });
+        };
+    }
 
     /* jshint validthis:true */
     /* jshint -W087 */ // All 'debugger' statements should be removed
@@ -47,16 +243,184 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
         var state = this.getState();
 
         this.parent = this.findAndExtendParent();
-        this.canvas = this.createCanvas(this.parent);
+        this.canvas = null;
         this.clearButton = null;
         this.signature = null;
+        this.signatureX = 0;
+        this.signatureY = 0;
+        this.trimEnabled = false;
+        this.trimPadding = 0;
+        this.exportCanvas = null;
+        this.cssWidth = 0;
+        this.cssHeight = 0;
+        this.displayScale = 1;
+        this.exportX = 0;
+        this.exportY = 0;
         this.mimeType = defaultMimeType;
-        this.signaturePad = this.createSignaturePad(this.canvas);
-        defaultDotSize = this.signaturePad.dotSize;
+        this.quality = defaultQuality;
+        this.encodableMimeTypes = {};
+        this.encodableMimeTypes[defaultMimeType] = true;
+        this.strokes = [];
+        this.strokeWidth = 0;
+        this.strokeHeight = 0;
+        this.baseImage = null;
+        this.resizeFrame = null;
+        this.pendingSize = null;
+        this.throttle = 0;
+        this.minDistance = 0;
+        this.lastInput = null;
+        this.trailingInput = null;
+        this.activePointer = null;
+        this.pointerQueue = [];
+        this.pointerFrame = null;
+        this.syncedStrokes = 0;
+        this.signatureToken = null;
+        this.baseToken = null;
+        this.importedImages = 0;
+        this.versionCheck = null;
+        this.lazyImage = null;
+        this.lazyObserver = null;
+        this.workerEncodingEnabled = false;
+        this.encoding = false;
+        this.encodePending = false;
+        this.uploading = false;
+        this.uploadPending = false;
+        this.transportMode = defaultTransportMode;
+        this.signaturePad = null;
+        this.initObserver = null;
+        this.deferredCalls = [];
         this.immediate = state.immediate;
+        this.updateDelay = state.updateDelay || 0;
+        this.updateTimer = null;
         this.readOnly = state.readOnly;
 
-        this.addResizeListener(this.parent, this.proxy(this.onResize));
+        // Don't lose a delayed update when the page gets hidden or unloaded
+        this.pageHideHandler = this.proxy(this.flushUpdate);
+        this.visibilityHandler = this.proxy(function () {
+            if (document.visibilityState === "hidden") {
+                this.flushUpdate();
+            }
+        });
+        this.addEvent(window, "pagehide", this.pageHideHandler);
+        this.addEvent(document, "visibilitychange", this.visibilityHandler);
+
+        if (state.lazyInitEnabled && window.IntersectionObserver) {
+            // Only a placeholder until the field becomes visible
+            this.addClass(this.parent, "signaturefield-placeholder");
+            this.initObserver = new IntersectionObserver(
+                    this.proxy(this.onInitIntersection), {
+                        rootMargin: "100px"
+                    });
+            this.initObserver.observe(this.parent);
+        } else {
+            this.initCanvas();
+        }
+    };
+
+    /**
+     * Creates the canvas and the signature pad, applies the shared state and
+     * replays the server-side calls received in the meantime.
+     * @returns {undefined}
+     */
+    this.initCanvas = function () {
+        var calls = this.deferredCalls,
+                i;
+        if (this.signaturePad) {
+            return;
+        }
+        if (this.initObserver) {
+            this.initObserver.disconnect();
+            this.initObserver = null;
+        }
+        this.removeClass(this.parent, "signaturefield-placeholder");
+        this.canvas = this.createCanvas(this.parent);
+        this.signaturePad = this.createSignaturePad(this.canvas);
+        defaultDotSize = this.signaturePad.dotSize;
+        this.observeResize();
+        this.deferredCalls = [];
+        this.onStateChange();
+        for (i = 0; i < calls.length; i++) {
+            calls[i][0].apply(this, calls[i][1]);
+        }
+    };
+
+    /**
+     * Observes the size of the parent element. The shared ResizeObserver of
+     * the page is used if the browser supports it, otherwise an element
+     * resize listener of the framework.
+     * @returns {undefined}
+     */
+    this.observeResize = function () {
+        if (!window.ResizeObserver || !window.requestAnimationFrame) {
+            this.addResizeListener(this.parent, this.proxy(this.onResize));
+            return;
+        }
+        if (!resizeScheduler.observer) {
+            resizeScheduler.observer = new ResizeObserver(onSharedResize);
+        }
+        resizeScheduler.connectors.push(this);
+        resizeScheduler.observer.observe(this.parent);
+    };
+
+    /**
+     * Gets called when the extension is unregistered. Stops observing the
+     * parent element and the page and drops a pending delayed update.
+     * @returns {undefined}
+     */
+    this.onUnregister = function () {
+        var connectors = resizeScheduler.connectors,
+                pending = resizeScheduler.pending,
+                index = connectors.indexOf(this);
+        this.cancelUpdate();
+        this.removeEvent(window, "pagehide", this.pageHideHandler);
+        this.removeEvent(document, "visibilitychange",
+                this.visibilityHandler);
+        if (index >= 0) {
+            connectors.splice(index, 1);
+            resizeScheduler.observer.unobserve(this.parent);
+        }
+        index = pending.indexOf(this);
+        if (index >= 0) {
+            pending.splice(index, 1);
+        }
+        if (this.initObserver) {
+            this.initObserver.disconnect();
+            this.initObserver = null;
+        }
+        if (this.lazyObserver) {
+            this.lazyObserver.disconnect();
+            this.lazyObserver = null;
+        }
+    };
+
+    /**
+     * Gets called when the visibility of the field changes before the canvas
+     * has been created.
+     * @param {Array.<IntersectionObserverEntry>} entries Changed entries
+     * @returns {undefined}
+     */
+    this.onInitIntersection = function (entries) {
+        for (var i = 0; i < entries.length; i++) {
+            if (entries[i].isIntersecting) {
+                this.initCanvas();
+                return;
+            }
+        }
+    };
+
+    /**
+     * Remembers the given server-side call if the canvas hasn't been created
+     * yet, so it can be replayed afterwards.
+     * @param {Function} func Called function
+     * @param {Arguments} args Arguments of the call
+     * @returns {boolean} The call has been deferred
+     */
+    this.deferCall = function (func, args) {
+        if (this.signaturePad) {
+            return false;
+        }
+        this.deferredCalls.push([func, Array.prototype.slice.call(args)]);
+        return true;
     };
 
     /**
@@ -79,20 +443,364 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
      * Imports the given signature dataURL into the canvas. Called from the
      * server-side to update the signature on the client-side
      * @param {string} newSignature Signture to import
+     * @param {number} [x=0] Horizontal offset of a trimmed signature
+     * @param {number} [y=0] Vertical offset of a trimmed signature
+     * @param {string} [token] Content token of the signature
      * @returns {undefined}
      */
-    this.setSignature = function (newSignature) {
+    this.setSignature = function (newSignature, x, y, token) {
         var signaturePad = this.signaturePad,
                 oldSignature = this.signature;
-        if (newSignature === oldSignature) {
+        if (this.deferCall(this.setSignature, arguments)) {
             return;
         }
+        x = x || 0;
+        y = y || 0;
+        if (x === this.signatureX && y === this.signatureY &&
+                (token ? token === this.signatureToken :
+                        newSignature === oldSignature)) {
+            return;
+        }
+        // The server-side value replaces a pending update
+        this.cancelUpdate();
         this.signature = newSignature;
+        this.signatureX = x;
+        this.signatureY = y;
+        this.strokes = [];
+        this.syncedStrokes = 0;
+        if (newSignature) {
+            // Values set on the server-side have no token, give them a
+            // unique one
+            token = token || "s" + (++this.importedImages);
+        } else {
+            token = null;
+        }
+        this.signatureToken = token;
+        this.baseToken = token;
         if (newSignature) {
             signaturePad.fromDataURL(newSignature);
         } else {
+            this.baseImage = null;
             signaturePad.clear();
         }
+        this.cacheSignature(newSignature);
+    };
+
+    /**
+     * Stores the given signature with the current token and offset in the
+     * page-wide cache or removes the entry if it is null.
+     * @param {string|null} signature Signature data url
+     * @returns {undefined}
+     */
+    this.cacheSignature = function (signature) {
+        var id = this.getConnectorId();
+        if (signature && this.signatureToken) {
+            signatureCache[id] = {
+                token: this.signatureToken,
+                signature: signature,
+                x: this.signatureX,
+                y: this.signatureY
+            };
+        } else {
+            delete signatureCache[id];
+        }
+    };
+
+    /**
+     * Schedules a check of the signature version in the shared state. The
+     * check is deferred until the RPC calls of the same response have been
+     * handled, because a signature sent along with the state change already
+     * updates the version.
+     * @returns {undefined}
+     */
+    this.scheduleVersionCheck = function () {
+        if (this.versionCheck === null) {
+            this.versionCheck = setTimeout(
+                    this.proxy(this.checkSignatureVersion), 0);
+        }
+    };
+
+    /**
+     * Compares the signature version of the server-side with the token of the
+     * signature the client-side holds. If they differ the signature is taken
+     * from the cache or requested from the server-side.
+     * @returns {undefined}
+     */
+    this.checkSignatureVersion = function () {
+        var state = this.getState(),
+                version = state.signatureVersion || null,
+                cached = signatureCache[this.getConnectorId()];
+        this.versionCheck = null;
+        this.lazyImage = null;
+        if (this.transportMode === "STROKES" ||
+                version === this.signatureToken) {
+            return;
+        }
+        if (cached && cached.token === version) {
+            this.setSignature(cached.signature, cached.x, cached.y,
+                    cached.token);
+        } else if (state.imageUrl) {
+            this.loadLazyImage({
+                url: this.translateVaadinUri(state.imageUrl),
+                token: version,
+                x: state.imageX,
+                y: state.imageY
+            });
+        } else {
+            this.requestSignature();
+        }
+    };
+
+    /**
+     * Loads the given signature image once the field becomes visible. The
+     * image is loaded from a cacheable url, so the browser can reuse it.
+     * @param {Object} image Url, token and offset of the image
+     * @returns {undefined}
+     */
+    this.loadLazyImage = function (image) {
+        this.lazyImage = image;
+        if (!window.IntersectionObserver) {
+            this.showLazyImage();
+        } else if (!this.lazyObserver) {
+            this.lazyObserver = new IntersectionObserver(
+                    this.proxy(this.onLazyIntersection), {
+                        rootMargin: "100px"
+                    });
+            this.lazyObserver.observe(this.parent);
+        }
+    };
+
+    /**
+     * Gets called when the visibility of the field changes while an image is
+     * waiting to be loaded.
+     * @param {Array.<IntersectionObserverEntry>} entries Changed entries
+     * @returns {undefined}
+     */
+    this.onLazyIntersection = function (entries) {
+        for (var i = 0; i < entries.length; i++) {
+            if (entries[i].isIntersecting) {
+                this.showLazyImage();
+                return;
+            }
+        }
+    };
+
+    /**
+     * Stops observing the field and draws the waiting image.
+     * @returns {undefined}
+     */
+    this.showLazyImage = function () {
+        var image = this.lazyImage;
+        if (this.lazyObserver) {
+            this.lazyObserver.disconnect();
+            this.lazyObserver = null;
+        }
+        this.lazyImage = null;
+        if (image) {
+            this.setSignature(image.url, image.x, image.y, image.token);
+        }
+    };
+
+    /**
+     * Imports the given strokes into the canvas. Called from the server-side
+     * to update the strokes on the client-side
+     * @param {number} width Width of the canvas the strokes were drawn on
+     * @param {number} height Height of the canvas the strokes were drawn on
+     * @param {Array.<Array.<number>>|null} strokes Strokes to import
+     * @returns {undefined}
+     */
+    this.setStrokes = function (width, height, strokes) {
+        if (this.deferCall(this.setStrokes, arguments)) {
+            return;
+        }
+        this.cancelUpdate();
+        this.signature = null;
+        this.baseImage = null;
+        this.strokes = strokes || [];
+        this.syncedStrokes = this.strokes.length;
+        this.strokeWidth = width || this.cssWidth;
+        this.strokeHeight = height || this.cssHeight;
+        this.redraw();
+    };
+
+    /**
+     * Redraws the canvas from the decoded base image and the recorded
+     * strokes, which are scaled to the current size of the canvas.
+     * @returns {undefined}
+     */
+    this.redraw = function () {
+        var signaturePad = this.signaturePad,
+                width = this.cssWidth,
+                height = this.cssHeight,
+                image = this.baseImage,
+                strokes = this.strokes,
+                context = this.canvas.getContext("2d"),
+                size, scaleX, scaleY;
+        signaturePad.clear();
+        if (image && image.complete && image.naturalWidth) {
+            if (this.trimEnabled) {
+                // Trimmed images keep their size in export pixels and are
+                // positioned at their offset
+                size = this.getExportSize();
+                scaleX = this.getScale(width, size.width);
+                scaleY = this.getScale(height, size.height);
+                context.drawImage(image, this.signatureX * scaleX,
+                        this.signatureY * scaleY, image.naturalWidth * scaleX,
+                        image.naturalHeight * scaleY);
+            } else {
+                context.drawImage(image, 0, 0, width, height);
+            }
+            this.setPadEmpty(false);
+        }
+        if (strokes.length > 0) {
+            this.drawStrokes(strokes, this.getScale(width, this.strokeWidth),
+                    this.getScale(height, this.strokeHeight));
+        }
+    };
+
+    /**
+     * Gets the factor between the given size and a reference size, like the
+     * size of the canvas and the size of the space the strokes are recorded
+     * in.
+     * @param {number} size Width or height
+     * @param {number} referenceSize Width or height to compare to
+     * @returns {number} Scale factor or 1 if one of the sizes is unknown
+     */
+    this.getScale = function (size, referenceSize) {
+        return size && referenceSize ? size / referenceSize : 1;
+    };
+
+    /**
+     * Gets the number of canvas pixels per CSS pixel. Defaults to the device
+     * pixel ratio, so the signature is drawn crisply on HiDPI screens.
+     * @returns {number} Display scale
+     */
+    this.getDisplayScale = function () {
+        var displayScale = this.getState().displayScale;
+        return displayScale > 0 ? displayScale : window.devicePixelRatio || 1;
+    };
+
+    /**
+     * Gets the size of the exported image. Defaults to the size of the canvas
+     * in CSS pixels. If only one dimension is set, the other one keeps the
+     * aspect ratio of the canvas.
+     * @returns {Object} Width and height
+     */
+    this.getExportSize = function () {
+        var state = this.getState(),
+                width = state.exportWidth,
+                height = state.exportHeight,
+                cssWidth = this.cssWidth,
+                cssHeight = this.cssHeight;
+        if (width && !height) {
+            height = Math.max(1, Math.round(width * this.getScale(cssHeight,
+                    cssWidth)));
+        } else if (height && !width) {
+            width = Math.max(1, Math.round(height * this.getScale(cssWidth,
+                    cssHeight)));
+        }
+        return {
+            width: width || cssWidth,
+            height: height || cssHeight
+        };
+    };
+
+    /**
+     * Draws the given strokes onto the canvas.
+     * @param {Array.<Array.<number>>} strokes Strokes to draw
+     * @param {number} scaleX Horizontal scale factor
+     * @param {number} scaleY Vertical scale factor
+     * @returns {undefined}
+     */
+    this.drawStrokes = function (strokes, scaleX, scaleY) {
+        var s;
+        for (s = 0; s < strokes.length; s++) {
+            this.drawPadStroke(strokes[s], scaleX, scaleY);
+        }
+    };
+
+    /**
+     * Checks if the given input is far enough from the last point of the
+     * stroke, in time and in distance, to become a point of its own. Inputs
+     * dropped by the throttle are remembered, so the last one can be added
+     * when the stroke ends.
+     * @param {Event|Touch|Object} event The input
+     * @returns {boolean} The input should be drawn
+     */
+    this.acceptInput = function (event) {
+        var last = this.lastInput,
+                time = event.time || new Date().getTime(),
+                dx, dy;
+        if (last) {
+            dx = event.clientX - last.clientX;
+            dy = event.clientY - last.clientY;
+            if (this.minDistance > 0 && dx * dx + dy * dy <=
+                    this.minDistance * this.minDistance) {
+                return false;
+            }
+            if (time - last.time < this.throttle) {
+                this.trailingInput = event;
+                return false;
+            }
+        }
+        this.trailingInput = null;
+        this.lastInput = {
+            clientX: event.clientX,
+            clientY: event.clientY,
+            time: time
+        };
+        return true;
+    };
+
+    /**
+     * Starts recording a new stroke.
+     * @returns {undefined}
+     */
+    this.beginStroke = function () {
+        if (this.strokes.length === 0) {
+            // The first stroke defines the space all strokes are recorded in,
+            // so resizing the canvas doesn't change them
+            this.strokeWidth = this.cssWidth;
+            this.strokeHeight = this.cssHeight;
+        }
+        this.currentStroke = [];
+        this.strokes.push(this.currentStroke);
+        this.lastInput = null;
+        this.trailingInput = null;
+    };
+
+    /**
+     * Ends the current stroke.
+     * @returns {Object|null} Input dropped by the throttle that still has to
+     * be drawn, so the stroke ends where the pen has been lifted
+     */
+    this.endStroke = function () {
+        var trailing = this.trailingInput;
+        this.trailingInput = null;
+        return trailing;
+    };
+
+    /**
+     * Records a point of the current stroke.
+     * @param {Object} point Point created by the signature pad
+     * @param {Event|Touch} event The input event of the point
+     * @returns {undefined}
+     */
+    this.recordPoint = function (point, event) {
+        var stroke = this.currentStroke,
+                pressure = event.pressure || event.force || 0,
+                scaleX = this.getScale(this.cssWidth, this.strokeWidth),
+                scaleY = this.getScale(this.cssHeight, this.strokeHeight);
+        if (!stroke) {
+            return;
+        }
+        if (stroke.length === 0) {
+            stroke.push(point.time);
+        }
+        stroke.push(Math.round(point.x / scaleX * 10) / 10,
+                Math.round(point.y / scaleY * 10) / 10,
+                point.time - stroke[0],
+                Math.round(pressure * 100) / 100);
     };
 
     /**
@@ -123,21 +831,39 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
      * @returns {undefined}
      */
     this.updateCanvasSize = function () {
-        var style = this.getComputedStyle(this.parent),
-                canvas = this.canvas,
-                signature = this.signature,
-                signaturePad = this.signaturePad,
-                width = parseInt(style.width),
-                height = parseInt(style.height);
+        var style = this.getComputedStyle(this.parent);
+        this.setCanvasSize(parseInt(style.width), parseInt(style.height));
+    };
 
-        canvas.width = width;
-        canvas.height = height;
+    /**
+     * Sets the size of the canvas in CSS pixels if the size or the display
+     * scale has changed. The canvas has display scale times more pixels than
+     * CSS pixels and its context is scaled, so everything is drawn in CSS
+     * pixels. The content is redrawn from the decoded image and the strokes,
+     * so the signature isn't decoded again.
+     * @param {number} width Width in CSS pixels
+     * @param {number} height Height in CSS pixels
+     * @returns {undefined}
+     */
+    this.setCanvasSize = function (width, height) {
+        var canvas = this.canvas,
+                displayScale = this.getDisplayScale();
 
-        if (signature) {
-            signaturePad.fromDataURL(signature);
-        } else {
-            signaturePad.clear();
+        if (this.cssWidth === width && this.cssHeight === height &&
+                this.displayScale === displayScale) {
+            return;
         }
+        this.cssWidth = width;
+        this.cssHeight = height;
+        this.displayScale = displayScale;
+        // Resizing also resets the transformation of the context
+        canvas.width = Math.round(width * displayScale);
+        canvas.height = Math.round(height * displayScale);
+        canvas.style.width = width + "px";
+        canvas.style.height = height + "px";
+        canvas.getContext("2d").setTransform(displayScale, 0, 0, displayScale,
+                0, 0);
+        this.redraw();
     };
 
     /**
@@ -146,26 +872,317 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
      * @returns {SignaturePad} Signature pad instance.
      */
     this.createSignaturePad = function (canvas) {
-        var signaturePad = new SignaturePad(canvas);
+        var self = this,
+                signaturePad = new SignaturePad(canvas),
+                clear = signaturePad.clear;
         signaturePad.onBegin = this.proxy(this.onStrokeBegin);
         signaturePad.onEnd = this.proxy(this.onStrokeEnd);
         signaturePad.vReadOnly = false;
+        this.hookSignaturePad(signaturePad);
+
+        if (window.PointerEvent) {
+            this.usePointerEvents(signaturePad);
+        }
 
-        // Remove window.devicePixelRatio
+        // Fill the whole canvas regardless of the display scale
+        signaturePad.clear = function () {
+            var ctx = canvas.getContext("2d"),
+                    displayScale = self.displayScale;
+            ctx.setTransform(1, 0, 0, 1, 0, 0);
+            clear.call(this);
+            ctx.setTransform(displayScale, 0, 0, displayScale, 0, 0);
+        };
+
+        // The display scale is applied by the extension itself. Keep the
+        // decoded image for redrawing
         signaturePad.fromDataURL = function (dataUrl) {
             var image = new Image();
-            image.src = dataUrl;
+            self.baseImage = image;
             image.onload = function () {
-                signaturePad.clear();
-                this._isEmpty = false;
-                signaturePad._ctx.drawImage(image, 0, 0, canvas.width, canvas.height);
+                // Ignore images that have been replaced in the meantime
+                if (self.baseImage === image) {
+                    self.redraw();
+                }
             };
-            this._isEmpty = false;
+            image.src = dataUrl;
+            self.setPadEmpty(false);
         };
        
         return signaturePad;
     };
 
+    /*
+     * Adapter to the internals of signature_pad 1.5.3. Only the following
+     * methods use private members of the signature pad, so an upgrade of
+     * signature_pad has to change this block only.
+     */
+
+    /**
+     * Hooks into the stroke handling of the given signature pad. Strokes are
+     * recorded while they are drawn and throttled inputs are dropped before
+     * they reach the curve builder.
+     * @param {SignaturePad} signaturePad Signature pad to change
+     * @returns {undefined}
+     */
+    this.hookSignaturePad = function (signaturePad) {
+        var self = this,
+                strokeBegin = signaturePad._strokeBegin,
+                strokeUpdate = signaturePad._strokeUpdate,
+                strokeEnd = signaturePad._strokeEnd,
+                createPoint = signaturePad._createPoint;
+        signaturePad._strokeBegin = function (event) {
+            self.beginStroke();
+            strokeBegin.call(this, event);
+        };
+        signaturePad._strokeUpdate = function (event) {
+            if (self.acceptInput(event)) {
+                strokeUpdate.call(this, event);
+            }
+        };
+        signaturePad._strokeEnd = function (event) {
+            var trailing = self.endStroke();
+            if (trailing) {
+                strokeUpdate.call(this, trailing);
+            }
+            strokeEnd.call(this, event);
+        };
+        signaturePad._createPoint = function (event) {
+            var point = createPoint.call(this, event);
+            // Positions of batched pointer events keep the time they were
+            // captured at, otherwise the velocity would be wrong
+            if (event.time) {
+                point.time = event.time;
+            }
+            self.recordPoint(point, event);
+            return point;
+        };
+        // The Point class of signature_pad is not exported
+        this.pointConstructor = createPoint.call(signaturePad,
+                {clientX: 0, clientY: 0}).constructor;
+    };
+
+    /**
+     * Starts a stroke at the given input.
+     * @param {Object} input Position and time of the input
+     * @returns {undefined}
+     */
+    this.beginPadStroke = function (input) {
+        this.signaturePad._strokeBegin(input);
+    };
+
+    /**
+     * Continues the current stroke to the given input.
+     * @param {Object} input Position and time of the input
+     * @returns {undefined}
+     */
+    this.updatePadStroke = function (input) {
+        this.signaturePad._strokeUpdate(input);
+    };
+
+    /**
+     * Ends the current stroke at the given input.
+     * @param {Object} input Position and time of the input
+     * @returns {undefined}
+     */
+    this.endPadStroke = function (input) {
+        this.signaturePad._strokeEnd(input);
+    };
+
+    /**
+     * Draws a recorded stroke by feeding its points into the curve builder
+     * of the signature pad.
+     * @param {Array.<number>} stroke Stroke to draw
+     * @param {number} scaleX Horizontal scale factor
+     * @param {number} scaleY Vertical scale factor
+     * @returns {undefined}
+     */
+    this.drawPadStroke = function (stroke, scaleX, scaleY) {
+        var signaturePad = this.signaturePad,
+                Point = this.pointConstructor,
+                startTime = stroke[0],
+                p;
+        signaturePad._reset();
+        for (p = 1; p < stroke.length; p += 4) {
+            signaturePad._addPoint(new Point(stroke[p] * scaleX,
+                    stroke[p + 1] * scaleY, startTime + stroke[p + 2]));
+        }
+        if (signaturePad.points.length <= 2 && signaturePad.points[0]) {
+            signaturePad._strokeDraw(signaturePad.points[0]);
+        }
+    };
+
+    /**
+     * Sets whether the signature pad reports to be empty. Used when content
+     * is drawn onto the canvas besides the strokes.
+     * @param {boolean} empty The signature pad is empty
+     * @returns {undefined}
+     */
+    this.setPadEmpty = function (empty) {
+        this.signaturePad._isEmpty = empty;
+    };
+
+    /**
+     * Replaces the mouse and touch listeners of the given signature pad with
+     * Pointer Events. Moves are collected together with their coalesced
+     * events and drawn once per animation frame, so high frequency pens are
+     * captured completely without drawing on every event.
+     * @param {SignaturePad} signaturePad Signature pad to change
+     * @returns {undefined}
+     */
+    this.usePointerEvents = function (signaturePad) {
+        var self = this,
+                canvas = this.canvas,
+                listeners = {
+                    pointerdown: this.proxy(this.onPointerDown),
+                    pointermove: this.proxy(this.onPointerMove),
+                    pointerup: this.proxy(this.onPointerUp),
+                    pointercancel: this.proxy(this.onPointerUp)
+                };
+        signaturePad.off();
+        signaturePad.on = function () {
+            canvas.style.touchAction = "none";
+            for (var type in listeners) {
+                if (listeners.hasOwnProperty(type)) {
+                    canvas.addEventListener(type, listeners[type], false);
+                }
+            }
+        };
+        signaturePad.off = function () {
+            for (var type in listeners) {
+                if (listeners.hasOwnProperty(type)) {
+                    canvas.removeEventListener(type, listeners[type], false);
+                }
+            }
+            self.activePointer = null;
+            self.cancelPointerQueue();
+        };
+        signaturePad.on();
+    };
+
+    /**
+     * Gets called when a pointer is pressed on the canvas. Starts a stroke if
+     * no other pointer is drawing.
+     * @param {PointerEvent} event The event
+     * @returns {undefined}
+     */
+    this.onPointerDown = function (event) {
+        var canvas = this.canvas;
+        if (this.activePointer !== null || event.button !== 0) {
+            return;
+        }
+        event.preventDefault();
+        this.activePointer = event.pointerId;
+        // Keep receiving the moves if the pointer leaves the canvas
+        if (canvas.setPointerCapture) {
+            try {
+                canvas.setPointerCapture(event.pointerId);
+            } catch (e) {
+                // The pointer is already gone
+            }
+        }
+        this.beginPadStroke(this.getPointerInput(event));
+    };
+
+    /**
+     * Gets called when a pointer moves over the canvas. Queues the positions
+     * of the drawing pointer for the next animation frame.
+     * @param {PointerEvent} event The event
+     * @returns {undefined}
+     */
+    this.onPointerMove = function (event) {
+        var events, i;
+        if (event.pointerId !== this.activePointer) {
+            return;
+        }
+        events = event.getCoalescedEvents ? event.getCoalescedEvents() : [];
+        if (events.length === 0) {
+            events = [event];
+        }
+        for (i = 0; i < events.length; i++) {
+            this.pointerQueue.push(this.getPointerInput(events[i]));
+        }
+        if (!window.requestAnimationFrame) {
+            this.flushPointerQueue();
+        } else if (this.pointerFrame === null) {
+            this.pointerFrame = window.requestAnimationFrame(
+                    this.proxy(this.flushPointerQueue));
+        }
+    };
+
+    /**
+     * Gets called when a pointer is released or canceled. Draws the queued
+     * positions and ends the stroke of the drawing pointer.
+     * @param {PointerEvent} event The event
+     * @returns {undefined}
+     */
+    this.onPointerUp = function (event) {
+        if (event.pointerId !== this.activePointer) {
+            return;
+        }
+        this.flushPointerQueue();
+        this.activePointer = null;
+        this.endPadStroke(this.getPointerInput(event));
+    };
+
+    /**
+     * Draws all queued pointer positions.
+     * @returns {undefined}
+     */
+    this.flushPointerQueue = function () {
+        var queue = this.pointerQueue,
+                i;
+        this.cancelPointerQueue();
+        for (i = 0; i < queue.length; i++) {
+            this.updatePadStroke(queue[i]);
+        }
+    };
+
+    /**
+     * Drops all queued pointer positions.
+     * @returns {undefined}
+     */
+    this.cancelPointerQueue = function () {
+        if (this.pointerFrame !== null) {
+            window.cancelAnimationFrame(this.pointerFrame);
+            this.pointerFrame = null;
+        }
+        this.pointerQueue = [];
+    };
+
+    /**
+     * Copies the values the signature pad needs from the given pointer
+     * event, because batched events are drawn after they have been
+     * dispatched.
+     * @param {PointerEvent} event The event
+     * @returns {Object} Position, pressure and time of the event
+     */
+    this.getPointerInput = function (event) {
+        return {
+            clientX: event.clientX,
+            clientY: event.clientY,
+            pressure: event.pressure,
+            time: this.getEventTime(event)
+        };
+    };
+
+    /**
+     * Gets the time of the given event in milliseconds since the epoch, like
+     * the points created by the signature pad.
+     * @param {Event} event The event
+     * @returns {number} Time of the event
+     */
+    this.getEventTime = function (event) {
+        var now = new Date().getTime(),
+                performance = window.performance,
+                elapsed;
+        if (!performance || !performance.now || !event.timeStamp) {
+            return now;
+        }
+        // The time stamp is relative to the page load
+        elapsed = performance.now() - event.timeStamp;
+        return elapsed >= 0 ? Math.round(now - elapsed) : now;
+    };
+
     /**
      * Creates the close button element and adds it to the given parent.
      * @param {Element} parent Parent element to add the close button to.
@@ -184,7 +1201,16 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
      * @returns {undefined}
      */
     this.onResize = function () {
-        this.updateCanvasSize();
+        if (!window.requestAnimationFrame) {
+            this.updateCanvasSize();
+        } else if (this.resizeFrame === null) {
+            // Handle all resizes of a frame at once
+            this.resizeFrame = window.requestAnimationFrame(
+                    this.proxy(function () {
+                        this.resizeFrame = null;
+                        this.updateCanvasSize();
+                    }));
+        }
     };
 
     /**
@@ -200,7 +1226,45 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
      * @returns {undefined}
      */
     this.onStrokeEnd = function () {
-        if (this.immediate) {
+        if (!this.immediate) {
+            return;
+        }
+        if (this.updateDelay > 0) {
+            this.scheduleUpdate();
+        } else {
+            this.updateSignature();
+        }
+    };
+
+    /**
+     * Schedules a delayed update of the server-side. Strokes within the
+     * update delay restart the timer, so they are coalesced into one update.
+     * @returns {undefined}
+     */
+    this.scheduleUpdate = function () {
+        this.cancelUpdate();
+        this.updateTimer = setTimeout(this.proxy(this.flushUpdate),
+                this.updateDelay);
+    };
+
+    /**
+     * Cancels a pending delayed update.
+     * @returns {undefined}
+     */
+    this.cancelUpdate = function () {
+        if (this.updateTimer !== null) {
+            clearTimeout(this.updateTimer);
+            this.updateTimer = null;
+        }
+    };
+
+    /**
+     * Sends a pending delayed update immediately.
+     * @returns {undefined}
+     */
+    this.flushUpdate = function () {
+        if (this.updateTimer !== null) {
+            this.cancelUpdate();
             this.updateSignature();
         }
     };
@@ -218,6 +1282,7 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
      * @returns {undefined}
      */
     this.onBlur = function () {
+        this.cancelUpdate();
         this.updateSignature();
         this.removeClass(this.parent, "v-focus");
     };
@@ -240,6 +1305,11 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
                 parent = this.parent,
                 signaturePad = this.signaturePad;
 
+        if (!signaturePad) {
+            // Applied once the canvas has been created
+            return;
+        }
+
         signaturePad.dotSize = state.dotSize || state.dotSize === 0 ?
                 state.dotSize : defaultDotSize;
         signaturePad.minWidth = state.minWidth;
@@ -247,9 +1317,22 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
         signaturePad.backgroundColor = state.backgroundColor;
         signaturePad.penColor = state.penColor;
         signaturePad.velocityFilterWeight = state.velocityFilterWeight;
+        this.throttle = state.throttle || 0;
+        this.minDistance = state.minDistance || 0;
 
-        this.mimeType = state.mimeType || defaultMimeType;
+        this.mimeType = this.resolveMimeType(state.mimeType || defaultMimeType);
+        this.quality = state.quality || state.quality === 0 ?
+                state.quality : defaultQuality;
+        this.transportMode = state.transportMode || defaultTransportMode;
         this.immediate = state.immediate;
+        this.updateDelay = state.updateDelay || 0;
+        this.scheduleVersionCheck();
+        this.trimEnabled = state.trimEnabled;
+        this.trimPadding = state.trimPadding || 0;
+        this.workerEncodingEnabled = state.workerEncodingEnabled;
+        if (this.cssWidth && this.displayScale !== this.getDisplayScale()) {
+            this.setCanvasSize(this.cssWidth, this.cssHeight);
+        }
 
         var readOnly = state.readOnly,
                 vReadOnly = signaturePad.vReadOnly;
@@ -271,6 +1354,47 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
         }
     };
 
+    /**
+     * Resolves the MIME-Type used to encode the signature. Browsers silently
+     * encode formats they don't support as PNG, so the first format of the
+     * fallback chain the browser is actually able to encode is returned.
+     * @param {string} mimeType Requested MIME-Type
+     * @returns {string} MIME-Type supported by the browser
+     */
+    this.resolveMimeType = function (mimeType) {
+        var candidates = [mimeType].concat(fallbackMimeTypes[mimeType] || []),
+                i;
+        for (i = 0; i < candidates.length; i++) {
+            if (this.canEncode(candidates[i])) {
+                return candidates[i];
+            }
+        }
+        return defaultMimeType;
+    };
+
+    /**
+     * Checks once per MIME-Type if the browser is able to encode it by
+     * encoding an 1x1 pixel canvas.
+     * @param {string} mimeType MIME-Type to check
+     * @returns {boolean} The browser is able to encode the MIME-Type
+     */
+    this.canEncode = function (mimeType) {
+        var encodable = this.encodableMimeTypes[mimeType],
+                canvas;
+        if (encodable === undefined) {
+            canvas = document.createElement("canvas");
+            canvas.width = canvas.height = 1;
+            try {
+                encodable = canvas.toDataURL(mimeType)
+                        .indexOf("data:" + mimeType) === 0;
+            } catch (e) {
+                encodable = false;
+            }
+            this.encodableMimeTypes[mimeType] = encodable;
+        }
+        return encodable;
+    };
+
     /**
      * Returns the computed style for the given element
      * @param {Element} el Element to get the styles from
@@ -290,23 +1414,524 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
      */
     this.getCurrentSignature = function () {
         var signaturePad = this.signaturePad;
-        return signaturePad.isEmpty() ?
-                null : signaturePad.toDataURL(this.mimeType, 1);
+        return signaturePad.isEmpty() ? null : this.getExportCanvas()
+                .toDataURL(this.mimeType, this.quality);
+    };
+
+    /**
+     * Gets the canvas the signature image is encoded from. The canvas is
+     * resampled to the export size. If trimming is enabled the ink is copied
+     * into a cropped canvas and its offset in export pixels is stored in
+     * exportX and exportY.
+     * @returns {Element} Canvas to encode
+     */
+    this.getExportCanvas = function () {
+        var canvas = this.canvas,
+                exportCanvas = this.exportCanvas,
+                size = this.getExportSize(),
+                scaleX = this.getScale(size.width, canvas.width),
+                scaleY = this.getScale(size.height, canvas.height),
+                bounds = this.trimEnabled ? this.findInkBounds() : null,
+                width, height;
+        this.exportX = 0;
+        this.exportY = 0;
+        if (!bounds) {
+            if (scaleX === 1 && scaleY === 1) {
+                return canvas;
+            }
+            bounds = {x: 0, y: 0, width: canvas.width, height: canvas.height};
+        }
+        if (!exportCanvas) {
+            exportCanvas = this.exportCanvas = document.createElement("canvas");
+        }
+        width = Math.max(1, Math.round(bounds.width * scaleX));
+        height = Math.max(1, Math.round(bounds.height * scaleY));
+        // Resizing also clears the canvas
+        exportCanvas.width = width;
+        exportCanvas.height = height;
+        exportCanvas.getContext("2d").drawImage(canvas, bounds.x, bounds.y,
+                bounds.width, bounds.height, 0, 0, width, height);
+        this.exportX = Math.round(bounds.x * scaleX);
+        this.exportY = Math.round(bounds.y * scaleY);
+        return exportCanvas;
+    };
+
+    /**
+     * Finds the bounding box of all pixels that differ from the background
+     * color, extended by the trim padding. The bounds are in canvas pixels.
+     * Rows are scanned from the top and the bottom first, so only the rows
+     * containing ink are scanned for the left and right edge.
+     * @returns {Object|null} Bounds with x, y, width and height or null if the
+     * canvas contains no ink
+     */
+    this.findInkBounds = function () {
+        var canvas = this.canvas,
+                width = canvas.width,
+                height = canvas.height,
+                padding = Math.round(this.trimPadding * this.displayScale),
+                pixels, background, top, bottom, left, right, x, y, row;
+        if (!width || !height) {
+            return null;
+        }
+        pixels = new Uint32Array(canvas.getContext("2d")
+                .getImageData(0, 0, width, height).data.buffer);
+        background = this.getBackgroundPixel();
+        for (top = 0; top < height; top++) {
+            if (!this.isBlankRow(pixels, top * width, width, background)) {
+                break;
+            }
+        }
+        if (top === height) {
+            return null;
+        }
+        for (bottom = height - 1; bottom > top; bottom--) {
+            if (!this.isBlankRow(pixels, bottom * width, width, background)) {
+                break;
+            }
+        }
+        left = width - 1;
+        right = 0;
+        for (y = top; y <= bottom; y++) {
+            row = y * width;
+            for (x = 0; x < left; x++) {
+                if (pixels[row + x] !== background) {
+                    left = x;
+                    break;
+                }
+            }
+            for (x = width - 1; x > right; x--) {
+                if (pixels[row + x] !== background) {
+                    right = x;
+                    break;
+                }
+            }
+        }
+        left = Math.max(0, left - padding);
+        top = Math.max(0, top - padding);
+        right = Math.min(width - 1, right + padding);
+        bottom = Math.min(height - 1, bottom + padding);
+        return {
+            x: left,
+            y: top,
+            width: right - left + 1,
+            height: bottom - top + 1
+        };
     };
 
     /**
-     * Updates the server-side signature value with the given signature.
+     * Checks if the given row only contains background pixels.
+     * @param {Uint32Array} pixels Pixels of the canvas
+     * @param {number} offset Index of the first pixel of the row
+     * @param {number} width Width of the row
+     * @param {number} background Background pixel
+     * @returns {boolean} The row contains no ink
+     */
+    this.isBlankRow = function (pixels, offset, width, background) {
+        for (var end = offset + width; offset < end; offset++) {
+            if (pixels[offset] !== background) {
+                return false;
+            }
+        }
+        return true;
+    };
+
+    /**
+     * Gets the background color as it is stored in the canvas by filling a
+     * 1x1 pixel canvas with it.
+     * @returns {number} Background pixel in the byte order of the platform
+     */
+    this.getBackgroundPixel = function () {
+        var canvas = document.createElement("canvas"),
+                ctx;
+        canvas.width = canvas.height = 1;
+        ctx = canvas.getContext("2d");
+        ctx.fillStyle = this.signaturePad.backgroundColor;
+        ctx.fillRect(0, 0, 1, 1);
+        return new Uint32Array(ctx.getImageData(0, 0, 1, 1).data.buffer)[0];
+    };
+
+    /**
+     * Computes a short token that identifies the current content of the
+     * canvas without encoding it. It is built from the token of the imported
+     * image, the encoding options, the export size and a FNV-1a hash of the
+     * recorded strokes.
+     * @returns {string|null} Content token or null if the canvas is empty
+     */
+    this.getContentToken = function () {
+        var strokes = this.strokes,
+                base = this.baseToken,
+                hash = 0x811c9dc5,
+                points = 0,
+                options, size, s, p, stroke, value;
+        if (strokes.length === 0) {
+            return base;
+        }
+        // The effective size, because the strokes are rendered differently
+        // after a resize if no export resolution is set
+        size = this.getExportSize();
+        options = (base || "") + "|" + this.mimeType + "|" + this.quality +
+                "|" + (this.trimEnabled ? this.trimPadding : -1) + "|" +
+                size.width + "x" + size.height;
+        for (p = 0; p < options.length; p++) {
+            hash = this.fnv(hash, options.charCodeAt(p));
+        }
+        for (s = 0; s < strokes.length; s++) {
+            stroke = strokes[s];
+            points += stroke.length;
+            for (p = 0; p < stroke.length; p++) {
+                value = Math.round(stroke[p] * 100);
+                hash = this.fnv(hash, value & 0xffff);
+                hash = this.fnv(hash, (value / 0x10000) & 0xffff);
+            }
+        }
+        return "c" + strokes.length + "." + points + "." + hash.toString(36);
+    };
+
+    /**
+     * Mixes the given 16 bit value into a FNV-1a hash.
+     * @param {number} hash Current hash
+     * @param {number} value Value to mix in
+     * @returns {number} The new hash
+     */
+    this.fnv = function (hash, value) {
+        hash = (hash ^ value) >>> 0;
+        // hash * 16777619 without losing precision
+        return (hash + (hash << 1) + (hash << 4) + (hash << 7) + (hash << 8) +
+                (hash << 24)) >>> 0;
+    };
+
+    /**
+     * Updates the server-side signature value with the given signature. The
+     * content token is compared first, so unchanged content is neither
+     * encoded nor sent. If worker encoding is enabled and supported the image
+     * is encoded in the background and sent afterwards.
      * @param {string|null} signature Signature value for the server-side.
      * @returns {undefined}
      */
     this.updateSignature = function (signature) {
-        var oldSignature = this.signature,
-                newSignature = arguments.length > 0 ?
-                signature : this.getCurrentSignature();
-        if (newSignature !== oldSignature) {
-            this.signature = newSignature;
-            this.fireSignatureChange(newSignature);
+        if (!this.signaturePad) {
+            // Nothing can have been drawn yet
+            return;
+        }
+        if (this.transportMode === "STROKES") {
+            this.updateStrokes(arguments.length > 0 && !signature);
+            return;
+        }
+        if (this.transportMode === "BINARY" && this.canUploadBinary()) {
+            this.updateBinary(arguments.length > 0 && !signature);
+            return;
+        }
+        var self = this,
+                token = arguments.length > 0 && !signature ?
+                null : this.getContentToken(),
+                async = this.canEncodeInWorker(),
+                canvas, x, y;
+        if (this.encoding && async) {
+            // Decide again after the running encoding has finished
+            this.encodePending = true;
+            return;
+        }
+        if (token === this.signatureToken) {
+            return;
+        }
+        if (token === null || !async) {
+            this.applySignature(token === null ?
+                    null : this.getCurrentSignature(), token,
+                    this.exportX, this.exportY);
+            return;
+        }
+        this.encoding = true;
+        canvas = this.getExportCanvas();
+        x = this.exportX;
+        y = this.exportY;
+        this.encodeInWorker(canvas, true, function (dataUrl) {
+            self.onEncoded(dataUrl, token, x, y);
+        });
+    };
+
+    /**
+     * Stores the given encoded signature and sends it to the server-side.
+     * @param {string|null} signature Signature data url
+     * @param {string|null} token Content token of the signature
+     * @param {number} x Horizontal offset of the signature
+     * @param {number} y Vertical offset of the signature
+     * @returns {undefined}
+     */
+    this.applySignature = function (signature, token, x, y) {
+        this.signature = signature;
+        this.signatureToken = signature ? token : null;
+        this.signatureX = signature ? x : 0;
+        this.signatureY = signature ? y : 0;
+        this.fireSignatureChange(signature, this.signatureX,
+                this.signatureY, this.signatureToken);
+        this.cacheSignature(signature);
+    };
+
+    /**
+     * Gets called when the worker has encoded the signature. The result is
+     * dropped if the content has changed in the meantime.
+     * @param {string|null} dataUrl Encoded signature or null if encoding
+     * failed
+     * @param {string} token Content token of the encoded signature
+     * @param {number} x Horizontal offset of the signature
+     * @param {number} y Vertical offset of the signature
+     * @returns {undefined}
+     */
+    this.onEncoded = function (dataUrl, token, x, y) {
+        this.encoding = false;
+        if (token !== this.signatureToken &&
+                token === this.getContentToken()) {
+            if (dataUrl === null) {
+                // Encode this image on the main thread instead
+                this.applySignature(this.getCurrentSignature(), token,
+                        this.exportX, this.exportY);
+            } else {
+                this.applySignature(dataUrl, token, x, y);
+            }
+        }
+        if (this.encodePending) {
+            this.encodePending = false;
+            this.updateSignature();
+        }
+    };
+
+    /**
+     * Checks if the signature can be encoded in the worker. Updates sent
+     * while the page gets hidden are encoded on the main thread, because the
+     * page might be gone before the worker has finished.
+     * @returns {boolean} Encoding in the worker is possible
+     */
+    this.canEncodeInWorker = function () {
+        return !!(this.workerEncodingEnabled && !encoder.failed &&
+                window.Worker && window.OffscreenCanvas &&
+                window.createImageBitmap && window.Blob && window.URL &&
+                document.visibilityState !== "hidden");
+    };
+
+    /**
+     * Copies the given canvas into an image bitmap and transfers it to the
+     * worker, which encodes it with the current MIME-Type and quality.
+     * @param {Element} canvas Canvas to encode
+     * @param {boolean} dataUrl Encode as data url instead of a blob
+     * @param {Function} callback Receives the data url or the blob, or null
+     * if encoding failed
+     * @returns {undefined}
+     */
+    this.encodeInWorker = function (canvas, dataUrl, callback) {
+        var worker = this.getEncoderWorker(),
+                id = ++encoder.nextId,
+                type = this.mimeType,
+                quality = this.quality;
+        if (!worker) {
+            callback(null);
+            return;
         }
+        encoder.callbacks[id] = callback;
+        // The bitmap is a snapshot, so the canvas may change afterwards
+        window.createImageBitmap(canvas).then(function (bitmap) {
+            worker.postMessage({
+                id: id,
+                bitmap: bitmap,
+                type: type,
+                quality: quality,
+                dataUrl: dataUrl
+            }, [bitmap]);
+        }, function () {
+            delete encoder.callbacks[id];
+            callback(null);
+        });
+    };
+
+    /**
+     * Gets the encoder worker of the page and creates it if necessary. If the
+     * worker can't be created or fails, encoding falls back to the main
+     * thread for all extensions. If only a single image can't be encoded,
+     * just that image is encoded on the main thread.
+     * @returns {Worker|null} The worker or null if it isn't available
+     */
+    this.getEncoderWorker = function () {
+        var source;
+        if (!encoder.worker && !encoder.failed) {
+            try {
+                source = new Blob(["(" + encoderMain.toString() + ")(self);"],
+                        {type: "application/javascript"});
+                encoder.worker = new Worker(URL.createObjectURL(source));
+                encoder.worker.onmessage = function (event) {
+                    var data = event.data,
+                            callback = encoder.callbacks[data.id];
+                    delete encoder.callbacks[data.id];
+                    // An error only concerns this image, e.g. a canvas that
+                    // is too large. The worker stays in use.
+                    if (callback) {
+                        callback(data.error ? null : data.dataUrl || data.blob);
+                    }
+                };
+                encoder.worker.onerror = function () {
+                    var callbacks = encoder.callbacks;
+                    encoder.failed = true;
+                    encoder.callbacks = {};
+                    for (var id in callbacks) {
+                        if (callbacks.hasOwnProperty(id)) {
+                            callbacks[id](null);
+                        }
+                    }
+                };
+            } catch (e) {
+                // E.g. forbidden by the content security policy
+                encoder.failed = true;
+            }
+        }
+        return encoder.failed ? null : encoder.worker;
+    };
+
+    /**
+     * Sends the recorded strokes to the server-side if they have changed. In
+     * immediate mode only the latest stroke is sent if the server-side already
+     * holds all previous ones.
+     * @param {boolean} cleared The field has been cleared
+     * @returns {undefined}
+     */
+    this.updateStrokes = function (cleared) {
+        var width = this.strokeWidth,
+                height = this.strokeHeight,
+                strokes = this.strokes,
+                synced = this.syncedStrokes;
+        if (cleared) {
+            if (synced > 0) {
+                this.syncedStrokes = 0;
+                this.fireStrokesChange(width, height, null);
+            }
+        } else if (synced !== strokes.length) {
+            this.syncedStrokes = strokes.length;
+            if (this.immediate && synced === strokes.length - 1) {
+                this.fireStrokeAdded(width, height, strokes[synced]);
+            } else {
+                this.fireStrokesChange(width, height, strokes);
+            }
+        }
+    };
+
+    /**
+     * Checks if the browser is able to post the signature as binary data.
+     * @returns {boolean} Binary upload is possible
+     */
+    this.canUploadBinary = function () {
+        return !!(this.canvas.toBlob && window.XMLHttpRequest &&
+                this.getState().uploadUrl);
+    };
+
+    /**
+     * Posts the canvas as binary image to the server-side if it has changed.
+     * Only one upload is running at a time.
+     * @param {boolean} cleared The field has been cleared
+     * @param {boolean} [mainThread=false] Encode on the main thread even if
+     * worker encoding is possible
+     * @returns {undefined}
+     */
+    this.updateBinary = function (cleared, mainThread) {
+        var self = this,
+                token = cleared ? null : this.getContentToken(),
+                canvas, x, y;
+        if (this.uploading) {
+            // Decide again after the running upload has finished
+            this.uploadPending = true;
+            return;
+        }
+        if (token === this.signatureToken) {
+            return;
+        }
+        if (token === null) {
+            this.signatureToken = null;
+            this.fireSignatureChange(null, 0, 0, null);
+            this.cacheSignature(null);
+            return;
+        }
+        this.uploading = true;
+        canvas = this.getExportCanvas();
+        x = this.exportX;
+        y = this.exportY;
+        if (mainThread || !this.canEncodeInWorker()) {
+            canvas.toBlob(function (blob) {
+                if (blob) {
+                    self.uploadBinary(blob, x, y, token);
+                } else {
+                    // E.g. the canvas is too large, an empty body would be
+                    // posted
+                    self.uploading = false;
+                    self.sendDataUrl();
+                }
+            }, this.mimeType, this.quality);
+            return;
+        }
+        this.encodeInWorker(canvas, false, function (blob) {
+            if (blob) {
+                self.uploadBinary(blob, x, y, token);
+            } else {
+                // Encode this image on the main thread instead
+                self.uploading = false;
+                self.updateBinary(false, true);
+            }
+        });
+    };
+
+    /**
+     * Sends the current signature as data url instead of posting it. Used if
+     * the binary image couldn't be encoded or posted.
+     * @returns {undefined}
+     */
+    this.sendDataUrl = function () {
+        this.applySignature(this.getCurrentSignature(),
+                this.getContentToken(), this.exportX, this.exportY);
+        if (this.uploadPending) {
+            this.uploadPending = false;
+            this.updateSignature();
+        }
+    };
+
+    /**
+     * Called from the server-side if it hasn't received the posted image,
+     * e.g. because the body was empty.
+     * @returns {undefined}
+     */
+    this.binaryUploadFailed = function () {
+        this.signatureToken = null;
+        this.sendDataUrl();
+    };
+
+    /**
+     * Posts the given blob to the upload url of the extension.
+     * @param {Blob} blob Image to post
+     * @param {number} x Horizontal offset of the image
+     * @param {number} y Vertical offset of the image
+     * @param {string} token Content token of the image
+     * @returns {undefined}
+     */
+    this.uploadBinary = function (blob, x, y, token) {
+        var self = this,
+                xhr = new XMLHttpRequest();
+        xhr.open("POST", this.translateVaadinUri(this.getState().uploadUrl),
+                true);
+        xhr.onreadystatechange = function () {
+            if (xhr.readyState !== 4) {
+                return;
+            }
+            self.uploading = false;
+            // A failed upload is retried with the next update because the
+            // token hasn't changed
+            if (xhr.status === 200) {
+                self.signatureToken = token;
+                self.signatureX = x;
+                self.signatureY = y;
+                self.fireBinaryUploaded(x, y, token);
+                // The data url of the uploaded image isn't known
+                self.cacheSignature(null);
+            }
+            if (self.uploadPending) {
+                self.uploadPending = false;
+                self.updateSignature();
+            }
+        };
+        xhr.send(blob);
     };
 
     /**
@@ -314,7 +1939,14 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
      * @returns {undefined}
      */
     this.clear = function () {
+        if (this.deferCall(this.clear, arguments)) {
+            return;
+        }
+        this.cancelUpdate();
         this.signaturePad.clear();
+        this.strokes = [];
+        this.baseImage = null;
+        this.baseToken = null;
         this.updateSignature(null);
     };
 
@@ -348,6 +1980,22 @@ function eu_maxschuster_vaadin_signaturefield_SignatureFieldExtension() {
         return false;
     };
 
+    /**
+     * Cross browser remove event. Counterpart of {@link #addEvent}.
+     * 
+     * @param {Element} ob
+     * @param {string} type
+     * @param {Function} fn
+     * @returns {undefined}
+     */
+    this.removeEvent = function (ob, type, fn) {
+        if (ob.removeEventListener) {
+            ob.removeEventListener(type, fn, false);
+        } else if (ob.detachEvent) {
+            ob.detachEvent('on' + type, fn);
+        }
+    };
+
     /**
      * Adds a style class to the given element.
      * @param {Element} el Element the class should be added to.
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield;
+
+import eu.maxschuster.vaadin.signaturefield.SignatureFieldExtension.AsyncSignatureChangeListener;
+import eu.maxschuster.vaadin.signaturefield.converter.PngOptimizer;
+
+/**
+ * An {@link AsyncSignatureChangeListener} that re-encodes new PNG signatures
+ * with a {@link PngOptimizer} without holding the session lock. The optimized
+ * image is passed to {@link #signatureProcessed(Object)} with the session
+ * lock held.<br>
+ * <br>
+ * Register it with the bounded worker pool of the optimizer:
+ * <pre>
+ * field.addAsyncSignatureChangeListener(new OptimizedSignatureListener() {
+ *     public void signatureProcessed(byte[] image) { ... }
+ *     public void signatureProcessingFailed(Throwable error) { ... }
+ * }, PngOptimizer.getDefaultExecutor());
+ * </pre>
+ *
+ * @author Max Schuster
+ */
+public abstract class OptimizedSignatureListener
+        implements AsyncSignatureChangeListener<byte[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@link PngOptimizer} used to re-encode PNG images
+     */
+    private final PngOptimizer optimizer;
+
+    /**
+     * Creates a new {@link OptimizedSignatureListener} with a default
+     * {@link PngOptimizer}.
+     */
+    public OptimizedSignatureListener() {
+        this(new PngOptimizer());
+    }
+
+    /**
+     * Creates a new {@link OptimizedSignatureListener} with the given
+     * {@link PngOptimizer}.
+     *
+     * @param optimizer {@link PngOptimizer} used to re-encode PNG images. Must
+     * not be {@code null}!
+     * @throws NullPointerException If {@code optimizer} is {@code null}
+     */
+    public OptimizedSignatureListener(PngOptimizer optimizer)
+            throws NullPointerException {
+        if (optimizer == null) {
+            throw new NullPointerException("The optimizer is mandatory and "
+                    + "mustn't be null");
+        }
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * Re-encodes the new signature image. Called by the executor without
+     * holding the session lock.
+     *
+     * @param image The new signature image or {@code null} if the field has
+     * been cleared
+     * @return The re-encoded image, the original image if it isn't a PNG or
+     * re-encoding doesn't make it smaller or {@code null} if the field has
+     * been cleared
+     * @throws Exception If the image can't be decoded
+     */
+    @Override
+    public byte[] processSignature(byte[] image) throws Exception {
+        return optimizer.optimize(image);
+    }
+
+    /**
+     * @return The {@link PngOptimizer} used to re-encode PNG images
+     */
+    public PngOptimizer getOptimizer() {
+        return optimizer;
+    }
+
+}
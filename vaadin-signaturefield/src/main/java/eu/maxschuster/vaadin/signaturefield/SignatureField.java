@@ -24,10 +24,19 @@ import com.vaadin.v7.ui.Field;
 import com.vaadin.ui.declarative.DesignAttributeHandler;
 import com.vaadin.ui.declarative.DesignContext;
 import eu.maxschuster.dataurl.DataUrl;
+import eu.maxschuster.vaadin.signaturefield.converter.DataUrlDecoder;
 import eu.maxschuster.vaadin.signaturefield.converter.StringToDataUrlConverter;
 
 import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import eu.maxschuster.vaadin.signaturefield.shared.TransportMode;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokeRenderer;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokeSignature;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Collection;
+import java.util.concurrent.Executor;
 import java.util.logging.Logger;
 import org.jsoup.nodes.Attributes;
 import org.jsoup.nodes.Element;
@@ -174,13 +183,17 @@ public class SignatureField extends CustomField<String> {
     /**
      * Is the field empty?<br>
      * The field is considered empty if its value
-     * is {@code null}
+     * is {@code null} and it has no strokes or binary signature.
      * 
      * @return Is the field empty?
+     * @see #getStrokes()
+     * @see #getSignatureBytes()
      */
     @Override
     public boolean isEmpty() {
-        return super.isEmpty();
+        StrokeSignature strokes = extension.getStrokes();
+        return super.isEmpty() && (strokes == null || strokes.isEmpty())
+                && extension.getSignatureBytes() == null;
     }
 
     /**
@@ -215,6 +228,9 @@ public class SignatureField extends CustomField<String> {
     @Override
     public void clear() {
         setValue(null);
+        extension.setStrokes(null, true);
+        extension.setSignatureBytes(null, true);
+        extension.setSignatureOffset(0, 0, true);
         extension.clear();
     }
 
@@ -229,15 +245,13 @@ public class SignatureField extends CustomField<String> {
         super.readDesign(design, designContext);
         Attributes attr = design.attributes();
         if (attr.hasKey("mime-type")) {
-            MimeType mimeType = null;
             String mimeTypeString = DesignAttributeHandler.getFormatter().parse(
                      attr.get("mime-type"), String.class);
-            try {
-                mimeType = MimeType.valueOfMimeType(mimeTypeString);
-            } catch (IllegalArgumentException e) {
+            MimeType mimeType = MimeType.fromMimeType(mimeTypeString);
+            if (mimeType == null) {
                 Logger.getLogger(SignatureField.class.getName()).info(
                         "Unsupported MIME-Type found when reading from design : "
-                                .concat(mimeTypeString));
+                                .concat(String.valueOf(mimeTypeString)));
             }
             setMimeType(mimeType);
         }
@@ -467,6 +481,67 @@ public class SignatureField extends CustomField<String> {
         return this;
     }
 
+    /**
+     * Gets the minimum time between two recorded points of a stroke
+     *
+     * @return The throttle in milliseconds
+     */
+    public int getThrottle() {
+        return extension.getThrottle();
+    }
+
+    /**
+     * Sets the minimum time between two recorded points of a stroke. Fewer
+     * points mean less work per stroke on the client-side and smaller stroke
+     * payloads. Defaults to {@code 0}, which records every point.
+     *
+     * @param throttle The throttle in milliseconds
+     */
+    public void setThrottle(int throttle) {
+        extension.setThrottle(throttle);
+    }
+
+    /**
+     * Sets the minimum time between two recorded points of a stroke
+     *
+     * @param throttle The throttle in milliseconds
+     * @return This {@link SignatureField}
+     */
+    public SignatureField withThrottle(int throttle) {
+        setThrottle(throttle);
+        return this;
+    }
+
+    /**
+     * Gets the minimum distance between two recorded points of a stroke
+     *
+     * @return The minimum distance in pixels
+     */
+    public double getMinDistance() {
+        return extension.getMinDistance();
+    }
+
+    /**
+     * Sets the minimum distance between two recorded points of a stroke.
+     * Defaults to {@code 0}, which records every point.
+     *
+     * @param minDistance The minimum distance in pixels
+     */
+    public void setMinDistance(double minDistance) {
+        extension.setMinDistance(minDistance);
+    }
+
+    /**
+     * Sets the minimum distance between two recorded points of a stroke
+     *
+     * @param minDistance The minimum distance in pixels
+     * @return This {@link SignatureField}
+     */
+    public SignatureField withMinDistance(double minDistance) {
+        setMinDistance(minDistance);
+        return this;
+    }
+
     /**
      * Sets the {@link MimeType} of generated images
      *
@@ -477,7 +552,10 @@ public class SignatureField extends CustomField<String> {
     }
 
     /**
-     * Sets the {@link MimeType} of generated images
+     * Sets the {@link MimeType} of generated images. If the browser can't
+     * encode {@link MimeType#WEBP} or {@link MimeType#AVIF} a supported
+     * fallback is used. Use {@link MimeType#fromDataUrl(String)} to find the
+     * actual {@link MimeType} of a value.
      *
      * @param mimeType The {@link MimeType} of generated images
      */
@@ -496,6 +574,135 @@ public class SignatureField extends CustomField<String> {
         return this;
     }
 
+    /**
+     * Gets the quality used to encode lossy formats like JPEG and WebP.
+     *
+     * @return Quality between 0 and 1
+     */
+    public double getQuality() {
+        return extension.getQuality();
+    }
+
+    /**
+     * Sets the quality used to encode lossy formats like JPEG and WebP.
+     * Defaults to 1.
+     *
+     * @param quality Quality between 0 and 1
+     */
+    public void setQuality(double quality) {
+        extension.setQuality(quality);
+    }
+
+    /**
+     * Sets the quality used to encode lossy formats like JPEG and WebP.
+     *
+     * @param quality Quality between 0 and 1
+     * @return This {@link SignatureField}
+     */
+    public SignatureField withQuality(double quality) {
+        setQuality(quality);
+        return this;
+    }
+
+    /**
+     * Gets the delay after the last pen stroke before an immediate field
+     * updates the server-side.
+     *
+     * @return Delay in milliseconds
+     */
+    public int getUpdateDelay() {
+        return extension.getUpdateDelay();
+    }
+
+    /**
+     * Sets the delay after the last pen stroke before an immediate field
+     * updates the server-side. Strokes within this window are coalesced into a
+     * single round-trip. Pending updates are always sent when the field loses
+     * focus. Defaults to {@code 0}, which updates after each stroke.
+     *
+     * @param updateDelay Delay in milliseconds
+     */
+    public void setUpdateDelay(int updateDelay) {
+        extension.setUpdateDelay(updateDelay);
+    }
+
+    /**
+     * Sets the delay after the last pen stroke before an immediate field
+     * updates the server-side.
+     *
+     * @param updateDelay Delay in milliseconds
+     * @return This {@link SignatureField}
+     * @see #setUpdateDelay(int)
+     */
+    public SignatureField withUpdateDelay(int updateDelay) {
+        setUpdateDelay(updateDelay);
+        return this;
+    }
+
+    /**
+     * Checks if the signature image of a read-only field is loaded lazily.
+     *
+     * @return Lazy loading is enabled
+     */
+    public boolean isLazyLoadEnabled() {
+        return extension.isLazyLoadEnabled();
+    }
+
+    /**
+     * Sets if the signature image of a read-only field is served through a
+     * cacheable url and only loaded once the field becomes visible, instead of
+     * being sent inline. Useful for pages that show many archived signatures.
+     *
+     * @param lazyLoadEnabled Enable lazy loading
+     */
+    public void setLazyLoadEnabled(boolean lazyLoadEnabled) {
+        extension.setLazyLoadEnabled(lazyLoadEnabled);
+    }
+
+    /**
+     * Sets if the signature image of a read-only field is loaded lazily.
+     *
+     * @param lazyLoadEnabled Enable lazy loading
+     * @return This {@link SignatureField}
+     * @see #setLazyLoadEnabled(boolean)
+     */
+    public SignatureField withLazyLoadEnabled(boolean lazyLoadEnabled) {
+        setLazyLoadEnabled(lazyLoadEnabled);
+        return this;
+    }
+
+    /**
+     * Checks if the canvas is only created once the field becomes visible.
+     *
+     * @return Lazy initialization is enabled
+     */
+    public boolean isLazyInitEnabled() {
+        return extension.isLazyInitEnabled();
+    }
+
+    /**
+     * Sets if the canvas is only created once the field becomes visible. Until
+     * then the field only shows a lightweight placeholder. Useful for long
+     * forms with many fields. Has to be set before the field is attached.
+     *
+     * @param lazyInitEnabled Enable lazy initialization
+     */
+    public void setLazyInitEnabled(boolean lazyInitEnabled) {
+        extension.setLazyInitEnabled(lazyInitEnabled);
+    }
+
+    /**
+     * Sets if the canvas is only created once the field becomes visible.
+     *
+     * @param lazyInitEnabled Enable lazy initialization
+     * @return This {@link SignatureField}
+     * @see #setLazyInitEnabled(boolean)
+     */
+    public SignatureField withLazyInitEnabled(boolean lazyInitEnabled) {
+        setLazyInitEnabled(lazyInitEnabled);
+        return this;
+    }
+
     /**
      * Gets the visibility of the clear button
      *
@@ -526,6 +733,474 @@ public class SignatureField extends CustomField<String> {
         setClearButtonEnabled(clearButtonEnabled);
         return this;
     }
+
+    /**
+     * Checks if the generated image gets cropped to the bounding box of the
+     * ink.
+     *
+     * @return Trimming is enabled
+     */
+    public boolean isTrimEnabled() {
+        return extension.isTrimEnabled();
+    }
+
+    /**
+     * Sets if the generated image gets cropped to the bounding box of the ink
+     * before it is encoded. This usually makes the image a lot smaller. Use
+     * {@link #getSignatureOffsetX()} and {@link #getSignatureOffsetY()} to
+     * position the trimmed image.
+     *
+     * @param trimEnabled Enable trimming
+     */
+    public void setTrimEnabled(boolean trimEnabled) {
+        extension.setTrimEnabled(trimEnabled);
+    }
+
+    /**
+     * Sets if the generated image gets cropped to the bounding box of the ink
+     * before it is encoded.
+     *
+     * @param trimEnabled Enable trimming
+     * @return This {@link SignatureField}
+     * @see #setTrimEnabled(boolean)
+     */
+    public SignatureField withTrimEnabled(boolean trimEnabled) {
+        setTrimEnabled(trimEnabled);
+        return this;
+    }
+
+    /**
+     * Gets the padding that is kept around the ink if the image gets trimmed.
+     *
+     * @return Padding in pixels
+     */
+    public int getTrimPadding() {
+        return extension.getTrimPadding();
+    }
+
+    /**
+     * Sets the padding that is kept around the ink if the image gets trimmed.
+     * Defaults to {@code 0}.
+     *
+     * @param trimPadding Padding in pixels
+     */
+    public void setTrimPadding(int trimPadding) {
+        extension.setTrimPadding(trimPadding);
+    }
+
+    /**
+     * Sets the padding that is kept around the ink if the image gets trimmed.
+     *
+     * @param trimPadding Padding in pixels
+     * @return This {@link SignatureField}
+     */
+    public SignatureField withTrimPadding(int trimPadding) {
+        setTrimPadding(trimPadding);
+        return this;
+    }
+
+    /**
+     * Gets the number of canvas pixels per CSS pixel.
+     *
+     * @return The display scale or {@code null} if the device pixel ratio of
+     * the browser is used
+     */
+    public Double getDisplayScale() {
+        return extension.getDisplayScale();
+    }
+
+    /**
+     * Sets the number of canvas pixels per CSS pixel. Higher values render the
+     * signature crisply on HiDPI screens without changing the size of the
+     * exported image. Defaults to {@code null}, which uses the device pixel
+     * ratio of the browser.
+     *
+     * @param displayScale The display scale or {@code null}
+     */
+    public void setDisplayScale(Double displayScale) {
+        extension.setDisplayScale(displayScale);
+    }
+
+    /**
+     * Sets the number of canvas pixels per CSS pixel.
+     *
+     * @param displayScale The display scale or {@code null}
+     * @return This {@link SignatureField}
+     * @see #setDisplayScale(java.lang.Double)
+     */
+    public SignatureField withDisplayScale(Double displayScale) {
+        setDisplayScale(displayScale);
+        return this;
+    }
+
+    /**
+     * Checks if the signature image is encoded in a Web Worker.
+     *
+     * @return Worker encoding is enabled
+     */
+    public boolean isWorkerEncodingEnabled() {
+        return extension.isWorkerEncodingEnabled();
+    }
+
+    /**
+     * Sets if the signature image is encoded in a Web Worker, so drawing stays
+     * responsive while large fields are encoded. Browsers without
+     * {@code OffscreenCanvas} support encode on the main thread. Defaults to
+     * {@code false}.
+     *
+     * @param workerEncodingEnabled Enable worker encoding
+     */
+    public void setWorkerEncodingEnabled(boolean workerEncodingEnabled) {
+        extension.setWorkerEncodingEnabled(workerEncodingEnabled);
+    }
+
+    /**
+     * Sets if the signature image is encoded in a Web Worker.
+     *
+     * @param workerEncodingEnabled Enable worker encoding
+     * @return This {@link SignatureField}
+     * @see #setWorkerEncodingEnabled(boolean)
+     */
+    public SignatureField withWorkerEncodingEnabled(
+            boolean workerEncodingEnabled) {
+        setWorkerEncodingEnabled(workerEncodingEnabled);
+        return this;
+    }
+
+    /**
+     * Gets the width of the exported image.
+     *
+     * @return Width in pixels or {@code null} if the width of the field is
+     * used
+     */
+    public Integer getExportWidth() {
+        return extension.getExportWidth();
+    }
+
+    /**
+     * Gets the height of the exported image.
+     *
+     * @return Height in pixels or {@code null} if the height of the field is
+     * used
+     */
+    public Integer getExportHeight() {
+        return extension.getExportHeight();
+    }
+
+    /**
+     * Sets the size of the exported image, so every device uploads images of
+     * the same resolution. If only one dimension is set, the other one keeps
+     * the aspect ratio of the field. Defaults to {@code null} for both, which
+     * exports the image in the size of the field.
+     *
+     * @param exportWidth Width in pixels or {@code null}
+     * @param exportHeight Height in pixels or {@code null}
+     */
+    public void setExportResolution(Integer exportWidth, Integer exportHeight) {
+        extension.setExportResolution(exportWidth, exportHeight);
+    }
+
+    /**
+     * Sets the size of the exported image.
+     *
+     * @param exportWidth Width in pixels or {@code null}
+     * @param exportHeight Height in pixels or {@code null}
+     * @return This {@link SignatureField}
+     * @see #setExportResolution(java.lang.Integer, java.lang.Integer)
+     */
+    public SignatureField withExportResolution(Integer exportWidth,
+            Integer exportHeight) {
+        setExportResolution(exportWidth, exportHeight);
+        return this;
+    }
+
+    /**
+     * Gets the horizontal offset of the signature image within the field.
+     * Only differs from {@code 0} if the image has been trimmed.
+     *
+     * @return Horizontal offset in pixels
+     */
+    public int getSignatureOffsetX() {
+        return extension.getSignatureOffsetX();
+    }
+
+    /**
+     * Gets the vertical offset of the signature image within the field. Only
+     * differs from {@code 0} if the image has been trimmed.
+     *
+     * @return Vertical offset in pixels
+     */
+    public int getSignatureOffsetY() {
+        return extension.getSignatureOffsetY();
+    }
+
+    /**
+     * Gets the opaque content token of the current signature. Equal tokens of
+     * this field mean equal content, which is cheaper than comparing the
+     * values.
+     *
+     * @return The content token or {@code null} if the value has been set on
+     * the server-side or the field is empty
+     */
+    public String getSignatureToken() {
+        return extension.getSignatureToken();
+    }
+
+    /**
+     * Sets the offset of the signature image within the field. Needed to
+     * restore a stored trimmed signature at its original position.
+     *
+     * @param x Horizontal offset in pixels
+     * @param y Vertical offset in pixels
+     */
+    public void setSignatureOffset(int x, int y) {
+        extension.setSignatureOffset(x, y);
+    }
+
+    /**
+     * Gets the {@link TransportMode} used to send the signature to the
+     * server-side.
+     *
+     * @return The {@link TransportMode}
+     */
+    public TransportMode getTransportMode() {
+        return extension.getTransportMode();
+    }
+
+    /**
+     * Sets the {@link TransportMode} used to send the signature to the
+     * server-side. With {@link TransportMode#STROKES} the value of this field
+     * stays {@code null} and the captured signature is available through
+     * {@link #getStrokes()}. With {@link TransportMode#BINARY} it is available
+     * through {@link #getSignatureBytes()}.
+     *
+     * @param transportMode The {@link TransportMode}. Must not be
+     * {@code null}!
+     */
+    public void setTransportMode(TransportMode transportMode) {
+        extension.setTransportMode(transportMode);
+    }
+
+    /**
+     * Sets the {@link TransportMode} used to send the signature to the
+     * server-side.
+     *
+     * @param transportMode The {@link TransportMode}. Must not be
+     * {@code null}!
+     * @return This {@link SignatureField}
+     * @see #setTransportMode(TransportMode)
+     */
+    public SignatureField withTransportMode(TransportMode transportMode) {
+        setTransportMode(transportMode);
+        return this;
+    }
+
+    /**
+     * Decodes the binary contents of the current data url value directly into
+     * the given {@link OutputStream} without creating a {@code byte[]} of the
+     * whole image. The stream is not closed.
+     *
+     * @param out The stream to write the image to
+     * @return Number of bytes written or {@code -1} if the field has no value
+     * @throws IOException If the value is malformed or writing fails
+     * @see DataUrlDecoder
+     */
+    public long writeSignature(OutputStream out) throws IOException {
+        String value = getValue();
+        return value != null ? DataUrlDecoder.decode(value, out) : -1;
+    }
+
+    /**
+     * Decodes the binary contents of the current data url value directly into
+     * the given {@link WritableByteChannel} without creating a {@code byte[]}
+     * of the whole image. The channel is not closed.
+     *
+     * @param channel The channel to write the image to
+     * @return Number of bytes written or {@code -1} if the field has no value
+     * @throws IOException If the value is malformed or writing fails
+     * @see DataUrlDecoder
+     */
+    public long writeSignature(WritableByteChannel channel)
+            throws IOException {
+        String value = getValue();
+        return value != null ? DataUrlDecoder.decode(value, channel) : -1;
+    }
+
+    /**
+     * Gets the captured binary signature. Only used with
+     * {@link TransportMode#BINARY}.
+     *
+     * @return The binary signature or {@code null}. The array is not copied
+     * and must not be modified.
+     */
+    public byte[] getSignatureBytes() {
+        return extension.getSignatureBytes();
+    }
+
+    /**
+     * Gets the captured binary signature as read-only {@link ByteBuffer}. Only
+     * used with {@link TransportMode#BINARY}.
+     *
+     * @return The binary signature or {@code null}
+     */
+    public ByteBuffer getSignatureByteBuffer() {
+        return extension.getSignatureByteBuffer();
+    }
+
+    /**
+     * Sets the binary signature and sends it to the client-side. Only used
+     * with {@link TransportMode#BINARY}.
+     *
+     * @param signatureBytes The binary signature in the format of
+     * {@link #getMimeType()} or {@code null}
+     */
+    public void setSignatureBytes(byte[] signatureBytes) {
+        extension.setSignatureBytes(signatureBytes);
+    }
+
+    /**
+     * Adds a {@link SignatureFieldExtension.BinarySignatureChangeListener}
+     * that gets called when the client-side sends a new binary signature.
+     *
+     * @param listener Listener to add
+     */
+    public void addBinarySignatureChangeListener(
+            SignatureFieldExtension.BinarySignatureChangeListener listener) {
+        extension.addBinarySignatureChangeListener(listener);
+    }
+
+    /**
+     * Removes a {@link SignatureFieldExtension.BinarySignatureChangeListener}.
+     *
+     * @param listener Listener to remove
+     */
+    public void removeBinarySignatureChangeListener(
+            SignatureFieldExtension.BinarySignatureChangeListener listener) {
+        extension.removeBinarySignatureChangeListener(listener);
+    }
+
+    /**
+     * Adds a {@link SignatureFieldExtension.AsyncSignatureChangeListener}
+     * that decodes and processes new signatures on the given {@link Executor}
+     * without holding the session lock. The result is delivered through
+     * {@link com.vaadin.ui.UI#access(Runnable)}.
+     *
+     * @param <T> Type of the processing result
+     * @param listener Listener to add
+     * @param executor {@link Executor} that processes the signatures
+     * @see SignatureFieldExtension#addAsyncSignatureChangeListener(SignatureFieldExtension.AsyncSignatureChangeListener, Executor)
+     */
+    public <T> void addAsyncSignatureChangeListener(
+            SignatureFieldExtension.AsyncSignatureChangeListener<T> listener,
+            Executor executor) {
+        extension.addAsyncSignatureChangeListener(listener, executor);
+    }
+
+    /**
+     * Removes a {@link SignatureFieldExtension.AsyncSignatureChangeListener}.
+     *
+     * @param listener Listener to remove
+     */
+    public void removeAsyncSignatureChangeListener(
+            SignatureFieldExtension.AsyncSignatureChangeListener<?> listener) {
+        extension.removeAsyncSignatureChangeListener(listener);
+    }
+
+    /**
+     * Gets the captured strokes. Only used with
+     * {@link TransportMode#STROKES}.
+     *
+     * @return The captured strokes or {@code null}
+     */
+    public StrokeSignature getStrokes() {
+        return extension.getStrokes();
+    }
+
+    /**
+     * Sets the strokes and sends them to the client-side. Only used with
+     * {@link TransportMode#STROKES}.
+     *
+     * @param strokes The strokes or {@code null}
+     */
+    public void setStrokes(StrokeSignature strokes) {
+        extension.setStrokes(strokes);
+    }
+
+    /**
+     * Renders the captured strokes to an image using the pen options of this
+     * field. Only used with {@link TransportMode#STROKES}.<br>
+     * <br>
+     * Use {@link #createStrokeRenderer()} to render many signatures with a
+     * single reusable {@link StrokeRenderer}.
+     *
+     * @param mimeType The format of the image
+     * @param width Width of the image in pixels
+     * @param height Height of the image in pixels
+     * @return The encoded image or {@code null} if there are no strokes
+     * @throws IOException If the image couldn't be written
+     */
+    public byte[] renderStrokes(MimeType mimeType, int width, int height)
+            throws IOException {
+        StrokeSignature strokes = getStrokes();
+        if (strokes == null) {
+            return null;
+        }
+        return createStrokeRenderer().toByteArray(strokes, mimeType, width,
+                height);
+    }
+
+    /**
+     * Creates a {@link StrokeRenderer} that uses the pen options of this
+     * field.
+     *
+     * @return A new {@link StrokeRenderer}
+     */
+    public StrokeRenderer createStrokeRenderer() {
+        return extension.createStrokeRenderer();
+    }
+
+    /**
+     * Adds a {@link SignatureFieldExtension.StrokesChangeListener} that gets
+     * called when the client-side sends new strokes.
+     *
+     * @param listener Listener to add
+     */
+    public void addStrokesChangeListener(
+            SignatureFieldExtension.StrokesChangeListener listener) {
+        extension.addStrokesChangeListener(listener);
+    }
+
+    /**
+     * Removes a {@link SignatureFieldExtension.StrokesChangeListener}.
+     *
+     * @param listener Listener to remove
+     */
+    public void removeStrokesChangeListener(
+            SignatureFieldExtension.StrokesChangeListener listener) {
+        extension.removeStrokesChangeListener(listener);
+    }
+
+    /**
+     * Adds a {@link SignatureFieldExtension.StrokeAddedListener} that gets
+     * called for each stroke the client-side sends in immediate mode.
+     *
+     * @param listener Listener to add
+     */
+    public void addStrokeAddedListener(
+            SignatureFieldExtension.StrokeAddedListener listener) {
+        extension.addStrokeAddedListener(listener);
+    }
+
+    /**
+     * Removes a {@link SignatureFieldExtension.StrokeAddedListener}.
+     *
+     * @param listener Listener to remove
+     */
+    public void removeStrokeAddedListener(
+            SignatureFieldExtension.StrokeAddedListener listener) {
+        extension.removeStrokeAddedListener(listener);
+    }
+
     /**
      * Sets the error that is shown if the field value cannot be converted to
      * the data source type. If {0} is present in the message, it will be
@@ -18,17 +18,53 @@ package eu.maxschuster.vaadin.signaturefield;
 import com.vaadin.annotations.JavaScript;
 import com.vaadin.annotations.StyleSheet;
 import com.vaadin.server.AbstractJavaScriptExtension;
+import com.vaadin.server.ConnectorResource;
+import com.vaadin.server.ServletPortletHelper;
+import com.vaadin.server.StreamVariable;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.shared.ApplicationConstants;
 import com.vaadin.shared.util.SharedUtil;
 import com.vaadin.ui.Component;
+import com.vaadin.ui.ConnectorTracker;
 import com.vaadin.ui.JavaScriptFunction;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 import com.vaadin.util.ReflectTools;
 import elemental.json.JsonArray;
 import elemental.json.JsonString;
+import elemental.json.JsonType;
 import elemental.json.JsonValue;
+import eu.maxschuster.vaadin.signaturefield.converter.DataUrlDecoder;
 import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
 import eu.maxschuster.vaadin.signaturefield.shared.SignatureFieldExtensionState;
+import eu.maxschuster.vaadin.signaturefield.shared.TransportMode;
+import eu.maxschuster.vaadin.signaturefield.stroke.Stroke;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokeCodec;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokeRenderer;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokeSignature;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A javascript extension that extends a {@link SignatureField} with the
@@ -46,11 +82,107 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
     
     private static final long serialVersionUID = 1L;
     
+    /**
+     * Name of the stream variable binary signatures are posted to
+     */
+    private static final String UPLOAD_VARIABLE = "signature";
+    
+    /**
+     * Connector request path of lazily loaded signature images
+     */
+    private static final String IMAGE_PATH = "image";
+    
+    /**
+     * Maximum size of a posted binary signature in bytes
+     */
+    private static final int MAX_UPLOAD_SIZE = 8 * 1024 * 1024;
+    
     /**
      * Current signature value
      */
     private String signature;
     
+    /**
+     * Opaque content token of the current signature sent by the client-side
+     * or {@code null} if the value has been set on the server-side
+     */
+    private String signatureToken;
+    
+    /**
+     * Source of the random version prefixes
+     */
+    private static final SecureRandom VERSION_RANDOM = new SecureRandom();
+    
+    /**
+     * Random prefix of the versions of signatures set on the server-side.
+     * The counter alone restarts in every extension, but the client-side
+     * caches signatures by their version.
+     */
+    private final String versionPrefix = "v" + Long.toString(
+            VERSION_RANDOM.nextLong() & Long.MAX_VALUE, 36) + ".";
+    
+    /**
+     * Counter used to create versions of signatures set on the server-side
+     */
+    private long versionCounter;
+    
+    /**
+     * Signature value or binary signature {@link #imageHash} has been
+     * computed for
+     */
+    private transient Object imageHashSource;
+    
+    /**
+     * Hash of the current signature image used in the url of the lazily
+     * loaded image
+     */
+    private transient String imageHash;
+    
+    /**
+     * Version of the signature the client-side is known to hold. Used to avoid
+     * sending it again when the extension is rendered from scratch.
+     */
+    private String clientVersion;
+    
+    /**
+     * Horizontal offset of the current signature image within the canvas if
+     * it has been trimmed
+     */
+    private int signatureOffsetX;
+    
+    /**
+     * Vertical offset of the current signature image within the canvas if it
+     * has been trimmed
+     */
+    private int signatureOffsetY;
+    
+    /**
+     * Current binary signature if the {@link TransportMode#BINARY} is used
+     */
+    private byte[] signatureBytes;
+    
+    /**
+     * Binary signature that has been posted but not yet been confirmed by the
+     * client-side
+     */
+    private byte[] uploadedBytes;
+    
+    /**
+     * Receives the binary signatures posted by the client-side
+     */
+    private final StreamVariable streamVariable = new SignatureStreamVariable();
+    
+    /**
+     * Current stroke value if the {@link TransportMode#STROKES} is used
+     */
+    private StrokeSignature strokes;
+    
+    /**
+     * Registered {@link AsyncSignatureChangeListener}s. Transient because an
+     * {@link Executor} usually isn't serializable.
+     */
+    private transient List<AsyncListenerRegistration<?>> asyncListeners;
+    
     /**
      * Listener that gets called when the signature changes
      */
@@ -74,12 +206,21 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
         private final SignatureFieldExtension extension;
         
         private final String signature;
+        
+        private final String token;
 
         public SignatureChangeEvent(Component source,
                 SignatureFieldExtension extension, String signature) {
+            this(source, extension, signature, null);
+        }
+
+        public SignatureChangeEvent(Component source,
+                SignatureFieldExtension extension, String signature,
+                String token) {
             super(source);
             this.extension = extension;
             this.signature = signature;
+            this.token = token;
         }
 
         /**
@@ -95,6 +236,414 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
         public String getSignature() {
             return signature;
         }
+
+        /**
+         * @return Opaque content token of the new signature or {@code null}
+         * @see SignatureFieldExtension#getSignatureToken()
+         */
+        public String getToken() {
+            return token;
+        }
+        
+    }
+    
+    /**
+     * Listener that processes signature changes without holding the session
+     * lock. The new signature image is decoded and processed by an
+     * {@link Executor}, the result is delivered through
+     * {@link UI#access(Runnable)}. Used with {@link TransportMode#DATA_URL}
+     * and {@link TransportMode#BINARY}.
+     * 
+     * @param <T> Type of the processing result
+     */
+    public interface AsyncSignatureChangeListener<T> extends Serializable {
+        
+        /**
+         * Processes the new signature. Called by the {@link Executor} without
+         * holding the session lock, so components must not be accessed.
+         * @param image The new signature image or {@code null} if the field
+         * has been cleared
+         * @return The processing result
+         * @throws Exception If processing fails
+         */
+        public T processSignature(byte[] image) throws Exception;
+        
+        /**
+         * Called with the session lock held after the signature has been
+         * processed.
+         * @param result The processing result
+         */
+        public void signatureProcessed(T result);
+        
+        /**
+         * Called with the session lock held if processing has failed or the
+         * {@link Executor} has rejected the task.
+         * @param error The cause
+         */
+        public void signatureProcessingFailed(Throwable error);
+        
+    }
+    
+    /**
+     * Runs an {@link AsyncSignatureChangeListener} on its {@link Executor}.
+     * Only one task per listener runs at a time. Signatures that change while
+     * it runs are coalesced and only the latest one gets processed afterwards.
+     * All fields are only accessed with the session lock held.
+     */
+    private static class AsyncListenerRegistration<T> {
+        
+        private final AsyncSignatureChangeListener<T> listener;
+        
+        private final Executor executor;
+        
+        private boolean running;
+        
+        private boolean pending;
+        
+        private Object pendingSignature;
+
+        public AsyncListenerRegistration(
+                AsyncSignatureChangeListener<T> listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+        
+        /**
+         * Submits the given signature to the {@link Executor}.
+         * @param ui The {@link UI} to deliver the result to
+         * @param signature Data url {@link String}, {@code byte[]} or
+         * {@code null}
+         */
+        public void submit(final UI ui, final Object signature) {
+            if (running) {
+                pending = true;
+                pendingSignature = signature;
+                return;
+            }
+            running = true;
+            try {
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        process(ui, signature);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running = false;
+                listener.signatureProcessingFailed(e);
+            }
+        }
+        
+        private void process(final UI ui, Object signature) {
+            T result = null;
+            Throwable error = null;
+            try {
+                result = listener.processSignature(toImage(signature));
+            } catch (Throwable e) {
+                // Errors like an OutOfMemoryError while decoding must still
+                // reach finished(), otherwise the listener stays running
+                error = e;
+            }
+            final T finalResult = result;
+            final Throwable finalError = error;
+            try {
+                ui.access(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        finished(ui, finalResult, finalError);
+                    }
+                });
+            } catch (UIDetachedException e) {
+                // Nobody is interested in the result anymore
+            }
+        }
+        
+        private void finished(UI ui, T result, Throwable error) {
+            running = false;
+            try {
+                if (error != null) {
+                    listener.signatureProcessingFailed(error);
+                } else {
+                    listener.signatureProcessed(result);
+                }
+            } finally {
+                if (pending) {
+                    Object signature = pendingSignature;
+                    pending = false;
+                    pendingSignature = null;
+                    submit(ui, signature);
+                }
+            }
+        }
+        
+        private static byte[] toImage(Object signature) throws IOException {
+            if (signature instanceof String) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                DataUrlDecoder.decode((String) signature, out);
+                return out.toByteArray();
+            }
+            return (byte[]) signature;
+        }
+        
+    }
+    
+    /**
+     * Listener that gets called when the binary signature changes. Only used
+     * with {@link TransportMode#BINARY}.
+     */
+    public interface BinarySignatureChangeListener extends Serializable {
+        
+        public static final Method METHOD = ReflectTools.findMethod(
+                BinarySignatureChangeListener.class, "binarySignatureChange",
+                BinarySignatureChangeEvent.class);
+        
+        public void binarySignatureChange(BinarySignatureChangeEvent event);
+        
+    }
+    
+    /**
+     * A binary signature change event
+     */
+    public static class BinarySignatureChangeEvent extends Component.Event {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final SignatureFieldExtension extension;
+        
+        private final byte[] bytes;
+        
+        private final String token;
+
+        public BinarySignatureChangeEvent(Component source,
+                SignatureFieldExtension extension, byte[] bytes) {
+            this(source, extension, bytes, null);
+        }
+
+        public BinarySignatureChangeEvent(Component source,
+                SignatureFieldExtension extension, byte[] bytes,
+                String token) {
+            super(source);
+            this.extension = extension;
+            this.bytes = bytes;
+            this.token = token;
+        }
+
+        /**
+         * @return The extension that has fired this event
+         */
+        public SignatureFieldExtension getExtension() {
+            return extension;
+        }
+
+        /**
+         * @return The new binary signature or {@code null} if the field has
+         * been cleared. The array is not copied and must not be modified.
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return The new binary signature as read-only {@link ByteBuffer} or
+         * {@code null} if the field has been cleared
+         */
+        public ByteBuffer getByteBuffer() {
+            return bytes != null ? ByteBuffer.wrap(bytes).asReadOnlyBuffer()
+                    : null;
+        }
+
+        /**
+         * @return Opaque content token of the new signature or {@code null}
+         * @see SignatureFieldExtension#getSignatureToken()
+         */
+        public String getToken() {
+            return token;
+        }
+        
+    }
+    
+    /**
+     * Receives binary signatures posted by the client-side. The posted bytes
+     * are kept until the client-side confirms the upload with a
+     * {@code fireBinaryUploaded} call.
+     */
+    private class SignatureStreamVariable implements StreamVariable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private transient ByteArrayOutputStream buffer;
+
+        @Override
+        public OutputStream getOutputStream() {
+            buffer = new ByteArrayOutputStream();
+            return new FilterOutputStream(buffer) {
+                
+                @Override
+                public void write(byte[] b, int off, int len)
+                        throws IOException {
+                    if (buffer.size() + len > MAX_UPLOAD_SIZE) {
+                        throw new IOException("Binary signature exceeds "
+                                + MAX_UPLOAD_SIZE + " bytes");
+                    }
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+                
+            };
+        }
+
+        @Override
+        public boolean listenProgress() {
+            return false;
+        }
+
+        @Override
+        public void onProgress(StreamVariable.StreamingProgressEvent event) {
+        }
+
+        @Override
+        public void streamingStarted(StreamVariable.StreamingStartEvent event) {
+        }
+
+        @Override
+        public void streamingFinished(StreamVariable.StreamingEndEvent event) {
+            if (buffer.size() > 0) {
+                uploadedBytes = buffer.toByteArray();
+            } else {
+                // No image can be empty, e.g. the browser couldn't encode it
+                uploadedBytes = null;
+                Logger.getLogger(SignatureFieldExtension.class.getName()).log(
+                        Level.WARNING, "Posted binary signature is empty");
+            }
+            buffer = null;
+        }
+
+        @Override
+        public void streamingFailed(StreamVariable.StreamingErrorEvent event) {
+            buffer = null;
+            Logger.getLogger(SignatureFieldExtension.class.getName()).log(
+                    Level.WARNING, "Upload of binary signature failed",
+                    event.getException());
+        }
+
+        @Override
+        public boolean isInterrupted() {
+            return false;
+        }
+        
+    }
+    
+    /**
+     * Listener that gets called when the strokes change. Only used with
+     * {@link TransportMode#STROKES}.
+     */
+    public interface StrokesChangeListener extends Serializable {
+        
+        public static final Method METHOD = ReflectTools.findMethod(
+                StrokesChangeListener.class, "strokesChange",
+                StrokesChangeEvent.class);
+        
+        public void strokesChange(StrokesChangeEvent event);
+        
+    }
+    
+    /**
+     * A strokes change event
+     */
+    public static class StrokesChangeEvent extends Component.Event {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final SignatureFieldExtension extension;
+        
+        private final StrokeSignature strokes;
+
+        public StrokesChangeEvent(Component source,
+                SignatureFieldExtension extension, StrokeSignature strokes) {
+            super(source);
+            this.extension = extension;
+            this.strokes = strokes;
+        }
+
+        /**
+         * @return The extension that has fired this event
+         */
+        public SignatureFieldExtension getExtension() {
+            return extension;
+        }
+
+        /**
+         * @return The new strokes or {@code null} if the field has been
+         * cleared
+         */
+        public StrokeSignature getStrokes() {
+            return strokes;
+        }
+        
+    }
+    
+    /**
+     * Listener that gets called when a single stroke has been added in
+     * immediate mode. Only used with {@link TransportMode#STROKES}.
+     */
+    public interface StrokeAddedListener extends Serializable {
+        
+        public static final Method METHOD = ReflectTools.findMethod(
+                StrokeAddedListener.class, "strokeAdded",
+                StrokeAddedEvent.class);
+        
+        public void strokeAdded(StrokeAddedEvent event);
+        
+    }
+    
+    /**
+     * A stroke added event
+     */
+    public static class StrokeAddedEvent extends Component.Event {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final SignatureFieldExtension extension;
+        
+        private final Stroke stroke;
+        
+        private final StrokeSignature strokes;
+
+        public StrokeAddedEvent(Component source,
+                SignatureFieldExtension extension, Stroke stroke,
+                StrokeSignature strokes) {
+            super(source);
+            this.extension = extension;
+            this.stroke = stroke;
+            this.strokes = strokes;
+        }
+
+        /**
+         * @return The extension that has fired this event
+         */
+        public SignatureFieldExtension getExtension() {
+            return extension;
+        }
+
+        /**
+         * @return The stroke that has been added
+         */
+        public Stroke getStroke() {
+            return stroke;
+        }
+
+        /**
+         * @return All strokes including the added one
+         */
+        public StrokeSignature getStrokes() {
+            return strokes;
+        }
         
     }
 
@@ -104,7 +653,10 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
         
         /*
          * Gets called from the client-side when it wants to change the signatue
-         * value at the server-side.
+         * value at the server-side. If the image has been trimmed its offset
+         * within the canvas is passed as second and third argument. The fourth
+         * argument is the content token of the signature. If it matches the
+         * current token the value hasn't changed and the call is ignored.
          */
         addFunction("fireSignatureChange", new JavaScriptFunction() {
 
@@ -115,74 +667,656 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
                 if (jsonValue instanceof JsonString) {
                     signature = jsonValue.asString();
                 } else {
-                    signature = null;
+                    signature = null;
+                }
+                String token = getToken(arguments, 3);
+                if (token != null && token.equals(signatureToken)) {
+                    return;
+                }
+                byte[] bytes = null;
+                if (signature != null
+                        && getTransportMode() == TransportMode.BINARY) {
+                    // The client-side can't post binary data. Decode before
+                    // changing any state, so malformed input is ignored.
+                    try {
+                        bytes = decodeDataUrl(signature);
+                    } catch (MalformedURLException e) {
+                        Logger.getLogger(SignatureFieldExtension.class
+                                .getName()).log(Level.WARNING,
+                                        "Ignoring malformed signature", e);
+                        return;
+                    }
+                }
+                setSignatureOffset(getOffset(arguments, 1),
+                        getOffset(arguments, 2), true);
+                if (getTransportMode() == TransportMode.BINARY) {
+                    setSignatureBytes(bytes, true);
+                    signatureToken = token;
+                    updateSignatureVersion();
+                    clientVersion = getState(false).signatureVersion;
+                    fireBinarySignatureChangeEvent(bytes);
+                    return;
+                }
+                if (token != null) {
+                    // The token has changed, so has the signature. No need
+                    // to compare the whole data urls.
+                    SignatureFieldExtension.this.signature = signature;
+                } else {
+                    setSignature(signature, true);
+                }
+                signatureToken = token;
+                updateSignatureVersion();
+                clientVersion = getState(false).signatureVersion;
+                fireSignatureChangeEvent(signature);
+            }
+        });
+        
+        /*
+         * Gets called from the client-side after it has posted a binary
+         * signature to the upload url. If the image has been trimmed its
+         * offset within the canvas is passed as first and second argument,
+         * the third argument is the content token of the signature.
+         */
+        addFunction("fireBinaryUploaded", new JavaScriptFunction() {
+
+            @Override
+            public void call(JsonArray arguments) {
+                byte[] bytes = uploadedBytes;
+                if (bytes != null) {
+                    uploadedBytes = null;
+                    setSignatureOffset(getOffset(arguments, 0),
+                            getOffset(arguments, 1), true);
+                    setSignatureBytes(bytes, true);
+                    signatureToken = getToken(arguments, 2);
+                    updateSignatureVersion();
+                    clientVersion = getState(false).signatureVersion;
+                    fireBinarySignatureChangeEvent(bytes);
+                } else {
+                    // The upload has failed, the client-side sends a data
+                    // url instead
+                    callFunction("binaryUploadFailed");
+                }
+            }
+        });
+        
+        /*
+         * Gets called from the client-side if it doesn't hold the current
+         * signature version, e.g. after it has been reattached and the
+         * signature isn't in its cache anymore.
+         */
+        addFunction("requestSignature", new JavaScriptFunction() {
+
+            @Override
+            public void call(JsonArray arguments) {
+                if (getTransportMode() == TransportMode.BINARY) {
+                    updateSignatureBytes();
+                } else if (getTransportMode() == TransportMode.DATA_URL) {
+                    updateSignature();
+                }
+            }
+        });
+        
+        /*
+         * Gets called from the client-side when it wants to change the strokes
+         * at the server-side. Arguments are the canvas width, height and the
+         * strokes or null if the field has been cleared.
+         */
+        addFunction("fireStrokesChange", new JavaScriptFunction() {
+
+            @Override
+            public void call(JsonArray arguments) {
+                StrokeSignature strokes;
+                JsonValue jsonValue = arguments.get(2);
+                if (jsonValue != null && jsonValue.getType() == JsonType.ARRAY) {
+                    strokes = new StrokeSignature(
+                            (int) arguments.getNumber(0),
+                            (int) arguments.getNumber(1),
+                            StrokeCodec.decodeStrokes(jsonValue));
+                } else {
+                    strokes = null;
+                }
+                setStrokes(strokes, true);
+                fireStrokesChangeEvent(strokes);
+            }
+        });
+        
+        /*
+         * Gets called from the client-side in immediate mode after each pen
+         * stroke. Only the new stroke is sent and appended to the existing
+         * strokes. Arguments are the canvas width, height and the stroke.
+         */
+        addFunction("fireStrokeAdded", new JavaScriptFunction() {
+
+            @Override
+            public void call(JsonArray arguments) {
+                Stroke stroke = StrokeCodec.decodeStroke(arguments.get(2));
+                StrokeSignature oldStrokes = getStrokes();
+                StrokeSignature strokes;
+                if (oldStrokes != null) {
+                    strokes = oldStrokes.withStroke(stroke);
+                } else {
+                    strokes = new StrokeSignature(
+                            (int) arguments.getNumber(0),
+                            (int) arguments.getNumber(1),
+                            Collections.singletonList(stroke));
+                }
+                setStrokes(strokes, true);
+                fireStrokeAddedEvent(stroke, strokes);
+            }
+        });
+    }
+
+    @Override
+    protected SignatureFieldExtensionState getState() {
+        return (SignatureFieldExtensionState) super.getState();
+    }
+
+    @Override
+    protected SignatureFieldExtensionState getState(boolean markAsDirty) {
+        return (SignatureFieldExtensionState) super.getState(markAsDirty);
+    }
+    
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+        TransportMode transportMode = getTransportMode();
+        if (transportMode == TransportMode.BINARY) {
+            registerUploadUrl();
+        }
+        updateImageUrl();
+        if (initial) {
+            if (transportMode == TransportMode.STROKES) {
+                updateStrokes();
+            } else if (!isLazyImage() && !SharedUtil.equals(clientVersion,
+                    getState(false).signatureVersion)) {
+                // Otherwise the client-side checks the version in the state
+                // and takes the signature from its cache or requests it
+                if (transportMode == TransportMode.BINARY) {
+                    updateSignatureBytes();
+                } else {
+                    updateSignature();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void detach() {
+        UI ui = getUI();
+        if (ui != null && getState(false).uploadUrl != null) {
+            ui.getConnectorTracker().cleanStreamVariable(getConnectorId(),
+                    UPLOAD_VARIABLE);
+            getState().uploadUrl = null;
+        }
+        super.detach();
+    }
+    
+    /**
+     * Registers the stream variable binary signatures are posted to and
+     * publishes its url in the shared state.
+     */
+    private void registerUploadUrl() {
+        UI ui = getUI();
+        ConnectorTracker tracker = ui.getConnectorTracker();
+        if (getState(false).uploadUrl == null || tracker.getStreamVariable(
+                getConnectorId(), UPLOAD_VARIABLE) == null) {
+            tracker.addStreamVariable(getConnectorId(), UPLOAD_VARIABLE,
+                    streamVariable);
+            getState().uploadUrl = ApplicationConstants.APP_PROTOCOL_PREFIX
+                    + ServletPortletHelper.UPLOAD_URL_PREFIX + ui.getUIId()
+                    + "/" + getConnectorId() + "/" + UPLOAD_VARIABLE + "/"
+                    + tracker.getSeckey(streamVariable);
+        }
+    }
+    
+    /**
+     * Reads an optional offset argument of a client-side call.
+     * @param arguments The arguments of the call
+     * @param index Index of the offset
+     * @return The offset or {@code 0} if it is missing
+     */
+    private static int getOffset(JsonArray arguments, int index) {
+        if (index < arguments.length()
+                && arguments.get(index).getType() == JsonType.NUMBER) {
+            return (int) arguments.getNumber(index);
+        }
+        return 0;
+    }
+    
+    /**
+     * Checks if the signature image is loaded lazily through the image url
+     * instead of being sent inline.
+     * @return The image is loaded lazily
+     */
+    private boolean isLazyImage() {
+        SignatureFieldExtensionState state = getState(false);
+        return state.lazyLoadEnabled && state.readOnly
+                && state.transportMode != TransportMode.STROKES
+                && state.signatureVersion != null;
+    }
+    
+    /**
+     * Gets the {@link MimeType} of the current signature image.
+     * @return The {@link MimeType}
+     */
+    private MimeType getImageMimeType() {
+        MimeType mimeType = signature != null
+                ? MimeType.fromDataUrl(signature) : null;
+        if (mimeType == null) {
+            mimeType = getMimeType();
+        }
+        return mimeType != null ? mimeType : MimeType.PNG;
+    }
+    
+    /**
+     * Gets the file name of the current signature image. It is the SHA-256
+     * hash of the image, so a url always refers to the same image, across
+     * all sessions, and can be cached forever.
+     * @return The file name
+     */
+    private String getImageFileName() {
+        String mimeType = getImageMimeType().getMimeType();
+        return getImageHash() + "."
+                + mimeType.substring(mimeType.indexOf('/') + 1);
+    }
+    
+    /**
+     * Gets the hash of the current signature image. It is computed once per
+     * signature value.
+     * @return The URL-safe Base64 encoded SHA-256 hash
+     */
+    private String getImageHash() {
+        Object source = signatureBytes != null ? signatureBytes : signature;
+        if (source != imageHashSource) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform supports SHA-256
+                throw new IllegalStateException(e);
+            }
+            if (signatureBytes != null) {
+                digest.update(signatureBytes);
+            } else {
+                // The data url contains the MIME-Type and determines the
+                // image, no need to decode it
+                digest.update(signature.getBytes(StandardCharsets.UTF_8));
+            }
+            imageHash = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(digest.digest());
+            imageHashSource = source;
+        }
+        return imageHash;
+    }
+    
+    /**
+     * Publishes the url of the signature image in the shared state if it is
+     * loaded lazily.
+     */
+    private void updateImageUrl() {
+        String imageUrl = null;
+        if (isLazyImage()) {
+            imageUrl = ApplicationConstants.APP_PROTOCOL_PREFIX
+                    + ApplicationConstants.APP_PATH + "/"
+                    + ConnectorResource.CONNECTOR_PATH + "/"
+                    + getUI().getUIId() + "/" + getConnectorId() + "/"
+                    + IMAGE_PATH + "/" + getImageFileName();
+        }
+        SignatureFieldExtensionState state = getState(false);
+        if (!SharedUtil.equals(state.imageUrl, imageUrl)) {
+            state = getState();
+            state.imageUrl = imageUrl;
+            state.imageX = signatureOffsetX;
+            state.imageY = signatureOffsetY;
+        }
+    }
+
+    /**
+     * Serves the lazily loaded signature image. Its url contains the hash of
+     * the image, so it is cached forever. Urls of other images are answered
+     * with 404.
+     */
+    @Override
+    public boolean handleConnectorRequest(VaadinRequest request,
+            VaadinResponse response, String path) throws IOException {
+        if (!path.startsWith(IMAGE_PATH + "/")) {
+            return super.handleConnectorRequest(request, response, path);
+        }
+        String hash;
+        String fileName;
+        String dataUrl;
+        byte[] bytes;
+        MimeType mimeType;
+        VaadinSession session = getSession();
+        session.lock();
+        try {
+            if (!isLazyImage()) {
+                return false;
+            }
+            hash = getImageHash();
+            fileName = getImageFileName();
+            mimeType = getImageMimeType();
+            dataUrl = signature;
+            bytes = signatureBytes;
+        } finally {
+            session.unlock();
+        }
+        
+        if (!path.equals(IMAGE_PATH + "/" + fileName)) {
+            // An outdated image, the client-side gets the current url with
+            // the next state change
+            response.sendError(404, "Signature image not found");
+            return true;
+        }
+        String etag = "\"" + hash + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control",
+                "private, max-age=31536000, immutable");
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(304);
+            return true;
+        }
+        response.setContentType(mimeType.getMimeType());
+        OutputStream out = response.getOutputStream();
+        try {
+            if (bytes != null) {
+                response.setContentLength(bytes.length);
+                out.write(bytes);
+            } else if (dataUrl != null) {
+                DataUrlDecoder.decode(dataUrl, out);
+            }
+        } finally {
+            out.close();
+        }
+        return true;
+    }
+    
+    /**
+     * Publishes the version of the current signature in the shared state. The
+     * content token of the client-side is used as version if present.
+     */
+    private void updateSignatureVersion() {
+        String version;
+        if (signature == null && signatureBytes == null) {
+            version = null;
+        } else if (signatureToken != null) {
+            version = signatureToken;
+        } else {
+            version = versionPrefix + (++versionCounter);
+        }
+        if (!SharedUtil.equals(getState(false).signatureVersion, version)) {
+            getState().signatureVersion = version;
+        }
+    }
+    
+    /**
+     * Reads an optional token argument of a client-side call.
+     * @param arguments The arguments of the call
+     * @param index Index of the token
+     * @return The token or {@code null} if it is missing
+     */
+    private static String getToken(JsonArray arguments, int index) {
+        if (index < arguments.length()
+                && arguments.get(index).getType() == JsonType.STRING) {
+            return arguments.getString(index);
+        }
+        return null;
+    }
+    
+    /**
+     * Decodes the binary contents of the given data url.
+     * @param dataUrl The data url
+     * @return The binary contents
+     * @throws MalformedURLException If the data url is malformed
+     */
+    private static byte[] decodeDataUrl(String dataUrl)
+            throws MalformedURLException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            DataUrlDecoder.decode(dataUrl, out);
+        } catch (MalformedURLException e) {
+            throw e;
+        } catch (IOException e) {
+            // Writing to a ByteArrayOutputStream doesn't fail
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Updates the client-side with the current signature value
+     */
+    protected void updateSignature() {
+        if (isLazyImage()) {
+            // The client-side loads the image when it becomes visible
+            return;
+        }
+        String version = getState(false).signatureVersion;
+        clientVersion = version;
+        callFunction("setSignature", getSignature(), signatureOffsetX,
+                signatureOffsetY, version);
+    }
+    
+    /**
+     * Updates the client-side with the current binary signature
+     */
+    protected void updateSignatureBytes() {
+        if (isLazyImage()) {
+            // The client-side loads the image when it becomes visible
+            return;
+        }
+        byte[] bytes = getSignatureBytes();
+        MimeType mimeType = getMimeType();
+        String version = getState(false).signatureVersion;
+        clientVersion = version;
+        if (bytes != null && mimeType != null) {
+            callFunction("setSignature", "data:" + mimeType.getMimeType()
+                    + ";base64," + Base64.getEncoder().encodeToString(bytes),
+                    signatureOffsetX, signatureOffsetY, version);
+        } else {
+            callFunction("setSignature", null, 0, 0, null);
+        }
+    }
+    
+    /**
+     * Updates the client-side with the current strokes
+     */
+    protected void updateStrokes() {
+        StrokeSignature s = getStrokes();
+        if (s != null) {
+            callFunction("setStrokes", s.getWidth(), s.getHeight(),
+                    StrokeCodec.encodeStrokes(s.getStrokes()));
+        } else {
+            callFunction("setStrokes", 0, 0, null);
+        }
+    }
+    
+    /**
+     * Clears the field on the client-side
+     */
+    public void clear() {
+        clientVersion = null;
+        callFunction("clear");
+    }
+    
+    /**
+     * @return Current signature value
+     */
+    public String getSignature() {
+        return signature;
+    }
+    
+    /**
+     * Set signature current signature value.
+     * @param signature Signature
+     * @param repaintIsNotNeeded Repaint is not needed
+     */
+    public void setSignature(String signature, boolean repaintIsNotNeeded) {
+        String oldSignature = this.signature;
+        if (!SharedUtil.equals(oldSignature, signature)) {
+            this.signature = signature;
+            signatureToken = null;
+            updateSignatureVersion();
+            if (!repaintIsNotNeeded) {
+                updateSignature();
+            }
+        }
+    }
+    
+    /**
+     * Set signature current signature value.
+     * @param signature Signature
+     */
+    public void setSignature(String signature) {
+        setSignature(signature, false);
+    }
+    
+    /**
+     * Gets the opaque content token of the current signature. The client-side
+     * computes it from the drawn strokes without encoding the image, so equal
+     * tokens mean equal content. Only tokens of the same field are
+     * comparable.
+     * @return The content token or {@code null} if the signature has been
+     * set on the server-side or the field is empty
+     */
+    public String getSignatureToken() {
+        return signatureToken;
+    }
+    
+    /**
+     * @return Horizontal offset of the current signature image within the
+     * canvas. Only differs from {@code 0} if the image has been trimmed.
+     */
+    public int getSignatureOffsetX() {
+        return signatureOffsetX;
+    }
+    
+    /**
+     * @return Vertical offset of the current signature image within the
+     * canvas. Only differs from {@code 0} if the image has been trimmed.
+     */
+    public int getSignatureOffsetY() {
+        return signatureOffsetY;
+    }
+    
+    /**
+     * Sets the offset of the current signature image within the canvas.
+     * Needed to position a trimmed signature image.
+     * @param x Horizontal offset
+     * @param y Vertical offset
+     * @param repaintIsNotNeeded Repaint is not needed
+     */
+    public void setSignatureOffset(int x, int y, boolean repaintIsNotNeeded) {
+        if (x != signatureOffsetX || y != signatureOffsetY) {
+            signatureOffsetX = x;
+            signatureOffsetY = y;
+            if (!repaintIsNotNeeded) {
+                // The position of the image has changed
+                signatureToken = null;
+                updateSignatureVersion();
+                if (getTransportMode() == TransportMode.BINARY) {
+                    updateSignatureBytes();
+                } else {
+                    updateSignature();
                 }
-                setSignature(signature, true);
-                fireSignatureChangeEvent(signature);
             }
-        });
+        }
     }
-
-    @Override
-    protected SignatureFieldExtensionState getState() {
-        return (SignatureFieldExtensionState) super.getState();
+    
+    /**
+     * Sets the offset of the current signature image within the canvas.
+     * Needed to position a trimmed signature image.
+     * @param x Horizontal offset
+     * @param y Vertical offset
+     */
+    public void setSignatureOffset(int x, int y) {
+        setSignatureOffset(x, y, false);
     }
-
-    @Override
-    protected SignatureFieldExtensionState getState(boolean markAsDirty) {
-        return (SignatureFieldExtensionState) super.getState(markAsDirty);
+    
+    /**
+     * @return Current binary signature or {@code null}. The array is not
+     * copied and must not be modified. Only used with
+     * {@link TransportMode#BINARY}.
+     */
+    public byte[] getSignatureBytes() {
+        return signatureBytes;
     }
     
-    @Override
-    public void beforeClientResponse(boolean initial) {
-        super.beforeClientResponse(initial);
-        if (initial) {
-            updateSignature();
-        }
+    /**
+     * @return Current binary signature as read-only {@link ByteBuffer} or
+     * {@code null}. Only used with {@link TransportMode#BINARY}.
+     */
+    public ByteBuffer getSignatureByteBuffer() {
+        return signatureBytes != null
+                ? ByteBuffer.wrap(signatureBytes).asReadOnlyBuffer() : null;
     }
     
     /**
-     * Updates the client-side with the current signature value
+     * Sets the current binary signature. Only used with
+     * {@link TransportMode#BINARY}.
+     * @param signatureBytes Binary signature
+     * @param repaintIsNotNeeded Repaint is not needed
      */
-    protected void updateSignature() {
-        callFunction("setSignature", getSignature());
+    public void setSignatureBytes(byte[] signatureBytes,
+            boolean repaintIsNotNeeded) {
+        byte[] oldSignatureBytes = this.signatureBytes;
+        if (oldSignatureBytes != signatureBytes) {
+            this.signatureBytes = signatureBytes;
+            signatureToken = null;
+            updateSignatureVersion();
+            if (!repaintIsNotNeeded) {
+                updateSignatureBytes();
+            }
+        }
     }
     
     /**
-     * Clears the field on the client-side
+     * Sets the current binary signature. Only used with
+     * {@link TransportMode#BINARY}.
+     * @param signatureBytes Binary signature
      */
-    public void clear() {
-        callFunction("clear");
+    public void setSignatureBytes(byte[] signatureBytes) {
+        setSignatureBytes(signatureBytes, false);
     }
     
     /**
-     * @return Current signature value
+     * @return Current strokes or {@code null}. Only used with
+     * {@link TransportMode#STROKES}.
      */
-    public String getSignature() {
-        return signature;
+    public StrokeSignature getStrokes() {
+        return strokes;
     }
     
     /**
-     * Set signature current signature value.
-     * @param signature Signature
+     * Sets the current strokes. Only used with {@link TransportMode#STROKES}.
+     * @param strokes Strokes
      * @param repaintIsNotNeeded Repaint is not needed
      */
-    public void setSignature(String signature, boolean repaintIsNotNeeded) {
-        String oldSignature = this.signature;
-        if (!SharedUtil.equals(oldSignature, signature)) {
-            this.signature = signature;
+    public void setStrokes(StrokeSignature strokes, boolean repaintIsNotNeeded) {
+        StrokeSignature oldStrokes = this.strokes;
+        if (!SharedUtil.equals(oldStrokes, strokes)) {
+            this.strokes = strokes;
             if (!repaintIsNotNeeded) {
-                updateSignature();
+                updateStrokes();
             }
         }
     }
     
     /**
-     * Set signature current signature value.
-     * @param signature Signature
+     * Sets the current strokes. Only used with {@link TransportMode#STROKES}.
+     * @param strokes Strokes
      */
-    public void setSignature(String signature) {
-        setSignature(signature, false);
+    public void setStrokes(StrokeSignature strokes) {
+        setStrokes(strokes, false);
+    }
+    
+    /**
+     * Creates a {@link StrokeRenderer} that uses the current pen options of
+     * this extension.
+     * @return A new {@link StrokeRenderer}
+     */
+    public StrokeRenderer createStrokeRenderer() {
+        return new StrokeRenderer(getState(false));
     }
     
     /**
@@ -190,7 +1324,70 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
      * @param signature New signature
      */
     public void fireSignatureChangeEvent(String signature) {
-        fireEvent(new SignatureChangeEvent((Component) getParent(), this, signature));
+        fireEvent(new SignatureChangeEvent((Component) getParent(), this,
+                signature, signatureToken));
+        fireAsyncSignatureChange(signature);
+    }
+    
+    /**
+     * Submits the given signature to all registered
+     * {@link AsyncSignatureChangeListener}s.
+     * @param signature Data url {@link String}, {@code byte[]} or
+     * {@code null}
+     */
+    private void fireAsyncSignatureChange(Object signature) {
+        UI ui = getUI();
+        if (asyncListeners == null || ui == null) {
+            return;
+        }
+        for (AsyncListenerRegistration<?> registration
+                : new ArrayList<AsyncListenerRegistration<?>>(asyncListeners)) {
+            registration.submit(ui, signature);
+        }
+    }
+    
+    /**
+     * Adds an {@link AsyncSignatureChangeListener} that processes new
+     * signatures on the given {@link Executor}. Use a bounded executor to
+     * limit the load, rejected tasks are reported to
+     * {@link AsyncSignatureChangeListener#signatureProcessingFailed(Throwable)}.
+     * On newer JDKs an executor that uses virtual threads is a good fit.
+     * The listener is not serialized with the session.
+     * @param <T> Type of the processing result
+     * @param listener Listener to add
+     * @param executor {@link Executor} that processes the signatures
+     * @throws NullPointerException If an argument is {@code null}
+     */
+    public <T> void addAsyncSignatureChangeListener(
+            AsyncSignatureChangeListener<T> listener, Executor executor)
+            throws NullPointerException {
+        if (listener == null || executor == null) {
+            throw new NullPointerException(
+                    "The listener and the executor mustn't be null");
+        }
+        if (asyncListeners == null) {
+            asyncListeners = new ArrayList<AsyncListenerRegistration<?>>();
+        }
+        asyncListeners.add(new AsyncListenerRegistration<T>(listener,
+                executor));
+    }
+    
+    /**
+     * Removes an {@link AsyncSignatureChangeListener}. A task that is already
+     * running still delivers its result.
+     * @param listener Listener to remove
+     */
+    public void removeAsyncSignatureChangeListener(
+            AsyncSignatureChangeListener<?> listener) {
+        if (asyncListeners == null) {
+            return;
+        }
+        Iterator<AsyncListenerRegistration<?>> it = asyncListeners.iterator();
+        while (it.hasNext()) {
+            if (it.next().listener == listener) {
+                it.remove();
+            }
+        }
     }
     
     /**
@@ -209,6 +1406,87 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
         removeListener(SignatureChangeEvent.class, listener, SignatureChangeListener.METHOD);
     }
     
+    /**
+     * Fires a new {@link StrokesChangeEvent} with the given strokes.
+     * @param strokes New strokes
+     */
+    public void fireStrokesChangeEvent(StrokeSignature strokes) {
+        fireEvent(new StrokesChangeEvent((Component) getParent(), this, strokes));
+    }
+    
+    /**
+     * Fires a new {@link BinarySignatureChangeEvent} with the given binary
+     * signature.
+     * @param bytes New binary signature
+     */
+    public void fireBinarySignatureChangeEvent(byte[] bytes) {
+        fireEvent(new BinarySignatureChangeEvent((Component) getParent(), this,
+                bytes, signatureToken));
+        fireAsyncSignatureChange(bytes);
+    }
+    
+    /**
+     * Adds a {@link BinarySignatureChangeListener}.
+     * @param listener Listener to add
+     */
+    public void addBinarySignatureChangeListener(
+            BinarySignatureChangeListener listener) {
+        addListener(BinarySignatureChangeEvent.class, listener,
+                BinarySignatureChangeListener.METHOD);
+    }
+    
+    /**
+     * Removes a {@link BinarySignatureChangeListener}.
+     * @param listener Listener to remove
+     */
+    public void removeBinarySignatureChangeListener(
+            BinarySignatureChangeListener listener) {
+        removeListener(BinarySignatureChangeEvent.class, listener,
+                BinarySignatureChangeListener.METHOD);
+    }
+    
+    /**
+     * Fires a new {@link StrokeAddedEvent} with the given stroke.
+     * @param stroke The added stroke
+     * @param strokes All strokes including the added one
+     */
+    public void fireStrokeAddedEvent(Stroke stroke, StrokeSignature strokes) {
+        fireEvent(new StrokeAddedEvent((Component) getParent(), this, stroke,
+                strokes));
+    }
+    
+    /**
+     * Adds a {@link StrokeAddedListener}.
+     * @param listener Listener to add
+     */
+    public void addStrokeAddedListener(StrokeAddedListener listener) {
+        addListener(StrokeAddedEvent.class, listener, StrokeAddedListener.METHOD);
+    }
+    
+    /**
+     * Removes a {@link StrokeAddedListener}.
+     * @param listener Listener to remove
+     */
+    public void removeStrokeAddedListener(StrokeAddedListener listener) {
+        removeListener(StrokeAddedEvent.class, listener, StrokeAddedListener.METHOD);
+    }
+    
+    /**
+     * Adds a {@link StrokesChangeListener}.
+     * @param listener Listener to add
+     */
+    public void addStrokesChangeListener(StrokesChangeListener listener) {
+        addListener(StrokesChangeEvent.class, listener, StrokesChangeListener.METHOD);
+    }
+    
+    /**
+     * Removes a {@link StrokesChangeListener}.
+     * @param listener Listener to remove
+     */
+    public void removeStrokesChangeListener(StrokesChangeListener listener) {
+        removeListener(StrokesChangeEvent.class, listener, StrokesChangeListener.METHOD);
+    }
+    
     /**
      * Returns true if the extension is immediate.
      * @return Extension is immediate.
@@ -225,6 +1503,69 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
         getState().immediate = immediate;
     }
     
+    /**
+     * Gets the delay after the last pen stroke before an immediate extension
+     * updates the server-side.
+     * @return Delay in milliseconds
+     */
+    public int getUpdateDelay() {
+        return getState(false).updateDelay;
+    }
+    
+    /**
+     * Sets the delay after the last pen stroke before an immediate extension
+     * updates the server-side. Strokes within this window are coalesced into a
+     * single update. Pending updates are always sent when the field loses
+     * focus. Defaults to {@code 0}, which updates after each stroke.
+     * @param updateDelay Delay in milliseconds
+     * @throws IllegalArgumentException If updateDelay is negative
+     */
+    public void setUpdateDelay(int updateDelay)
+            throws IllegalArgumentException {
+        if (updateDelay < 0) {
+            throw new IllegalArgumentException(
+                    "updateDelay must not be negative");
+        }
+        getState().updateDelay = updateDelay;
+    }
+    
+    /**
+     * Checks if the signature image of a read-only extension is loaded
+     * lazily.
+     * @return Lazy loading is enabled
+     */
+    public boolean isLazyLoadEnabled() {
+        return getState(false).lazyLoadEnabled;
+    }
+    
+    /**
+     * Sets if the signature image of a read-only extension is served through
+     * a cacheable url and only loaded once the field becomes visible, instead
+     * of being sent inline. Not used with {@link TransportMode#STROKES}.
+     * @param lazyLoadEnabled Enable lazy loading
+     */
+    public void setLazyLoadEnabled(boolean lazyLoadEnabled) {
+        getState().lazyLoadEnabled = lazyLoadEnabled;
+    }
+    
+    /**
+     * Checks if the canvas is only created once the field becomes visible.
+     * @return Lazy initialization is enabled
+     */
+    public boolean isLazyInitEnabled() {
+        return getState(false).lazyInitEnabled;
+    }
+    
+    /**
+     * Sets if the canvas and the signature pad are only created once the
+     * field becomes visible. Until then the field only shows a placeholder.
+     * Has to be set before the extension is attached.
+     * @param lazyInitEnabled Enable lazy initialization
+     */
+    public void setLazyInitEnabled(boolean lazyInitEnabled) {
+        getState().lazyInitEnabled = lazyInitEnabled;
+    }
+    
     /**
      * Returns true if extension is read only.
      * @return Extension is read only.
@@ -365,18 +1706,64 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
         getState().velocityFilterWeight = velocityFilterWeight;
     }
 
+    /**
+     * Gets the minimum time between two recorded points of a stroke
+     *
+     * @return The throttle in milliseconds
+     */
+    public int getThrottle() {
+        return getState(false).throttle;
+    }
+
+    /**
+     * Sets the minimum time between two recorded points of a stroke. Points
+     * that follow the previous one faster are dropped on the client-side
+     * before they are drawn, except for the last point of the stroke.
+     * Defaults to {@code 0}, which records every point.
+     *
+     * @param throttle The throttle in milliseconds
+     * @throws IllegalArgumentException If throttle is negative
+     */
+    public void setThrottle(int throttle) throws IllegalArgumentException {
+        if (throttle < 0) {
+            throw new IllegalArgumentException("throttle must not be negative");
+        }
+        getState().throttle = throttle;
+    }
+
+    /**
+     * Gets the minimum distance between two recorded points of a stroke
+     *
+     * @return The minimum distance in pixels
+     */
+    public double getMinDistance() {
+        return getState(false).minDistance;
+    }
+
+    /**
+     * Sets the minimum distance between two recorded points of a stroke.
+     * Points closer to the previous one are dropped on the client-side before
+     * they are drawn. Defaults to {@code 0}, which records every point.
+     *
+     * @param minDistance The minimum distance in pixels
+     * @throws IllegalArgumentException If minDistance is negative
+     */
+    public void setMinDistance(double minDistance)
+            throws IllegalArgumentException {
+        if (!(minDistance >= 0)) {
+            throw new IllegalArgumentException(
+                    "minDistance must not be negative");
+        }
+        getState().minDistance = minDistance;
+    }
+
     /**
      * Sets the {@link MimeType} of generated images
      *
      * @return The {@link MimeType} of generated images
      */
     public MimeType getMimeType() {
-        String mimeType = getState(false).mimeType;
-        if (mimeType != null) {
-            return MimeType.valueOfMimeType(mimeType);
-        } else {
-            return null;
-        }
+        return MimeType.fromMimeType(getState(false).mimeType);
     }
 
     /**
@@ -392,6 +1779,30 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
         }
     }
 
+    /**
+     * Gets the quality used to encode lossy formats like JPEG and WebP.
+     *
+     * @return Quality between 0 and 1
+     */
+    public double getQuality() {
+        return getState(false).quality;
+    }
+
+    /**
+     * Sets the quality used to encode lossy formats like JPEG and WebP.
+     * Defaults to 1.
+     *
+     * @param quality Quality between 0 and 1
+     * @throws IllegalArgumentException If quality is not between 0 and 1
+     */
+    public void setQuality(double quality) throws IllegalArgumentException {
+        if (!(quality >= 0 && quality <= 1)) {
+            throw new IllegalArgumentException(
+                    "quality must be between 0 and 1");
+        }
+        getState().quality = quality;
+    }
+
     /**
      * Gets the visibility of the clear button
      *
@@ -411,4 +1822,170 @@ public class SignatureFieldExtension extends AbstractJavaScriptExtension {
         getState().clearButtonEnabled = clearButtonEnabled;
     }
     
-}
+    /**
+     * Checks if the generated image gets cropped to the bounding box of the
+     * ink.
+     *
+     * @return Trimming is enabled
+     */
+    public boolean isTrimEnabled() {
+        return getState(false).trimEnabled;
+    }
+
+    /**
+     * Sets if the generated image gets cropped to the bounding box of the ink
+     * before it is encoded. The offset of the trimmed image is available
+     * through {@link #getSignatureOffsetX()} and
+     * {@link #getSignatureOffsetY()}.
+     *
+     * @param trimEnabled Enable trimming
+     */
+    public void setTrimEnabled(boolean trimEnabled) {
+        getState().trimEnabled = trimEnabled;
+    }
+
+    /**
+     * Gets the padding that is kept around the ink if the image gets trimmed.
+     *
+     * @return Padding in pixels
+     */
+    public int getTrimPadding() {
+        return getState(false).trimPadding;
+    }
+
+    /**
+     * Sets the padding that is kept around the ink if the image gets trimmed.
+     * Defaults to {@code 0}.
+     *
+     * @param trimPadding Padding in pixels
+     * @throws IllegalArgumentException If trimPadding is negative
+     */
+    public void setTrimPadding(int trimPadding)
+            throws IllegalArgumentException {
+        if (trimPadding < 0) {
+            throw new IllegalArgumentException(
+                    "trimPadding must not be negative");
+        }
+        getState().trimPadding = trimPadding;
+    }
+
+    /**
+     * Gets the number of canvas pixels per CSS pixel.
+     *
+     * @return The display scale or {@code null} if the device pixel ratio of
+     * the browser is used
+     */
+    public Double getDisplayScale() {
+        return getState(false).displayScale;
+    }
+
+    /**
+     * Sets the number of canvas pixels per CSS pixel. Only affects how sharp
+     * the signature is rendered on the client-side, the size of the exported
+     * image is set with {@link #setExportResolution(Integer, Integer)}.
+     * Defaults to {@code null}, which uses the device pixel ratio of the
+     * browser.
+     *
+     * @param displayScale The display scale or {@code null}
+     * @throws IllegalArgumentException If displayScale is not positive
+     */
+    public void setDisplayScale(Double displayScale)
+            throws IllegalArgumentException {
+        if (displayScale != null && !(displayScale > 0)) {
+            throw new IllegalArgumentException(
+                    "displayScale must be positive");
+        }
+        getState().displayScale = displayScale;
+    }
+
+    /**
+     * Checks if the signature image is encoded in a Web Worker.
+     *
+     * @return Worker encoding is enabled
+     */
+    public boolean isWorkerEncodingEnabled() {
+        return getState(false).workerEncodingEnabled;
+    }
+
+    /**
+     * Sets if the signature image is encoded in a Web Worker with an
+     * {@code OffscreenCanvas}, so the input stays responsive while large
+     * canvases are encoded. Browsers without support encode on the main
+     * thread. Defaults to {@code false}.
+     *
+     * @param workerEncodingEnabled Enable worker encoding
+     */
+    public void setWorkerEncodingEnabled(boolean workerEncodingEnabled) {
+        getState().workerEncodingEnabled = workerEncodingEnabled;
+    }
+
+    /**
+     * Gets the width of the exported image.
+     *
+     * @return Width in pixels or {@code null} if the width of the field is
+     * used
+     */
+    public Integer getExportWidth() {
+        return getState(false).exportWidth;
+    }
+
+    /**
+     * Gets the height of the exported image.
+     *
+     * @return Height in pixels or {@code null} if the height of the field is
+     * used
+     */
+    public Integer getExportHeight() {
+        return getState(false).exportHeight;
+    }
+
+    /**
+     * Sets the size of the exported image independently of the size of the
+     * field and the display scale. If only one dimension is set, the other
+     * one keeps the aspect ratio of the field. Trimmed images and their
+     * offsets are in the pixels of this size. Defaults to {@code null} for
+     * both, which exports the image in the size of the field.
+     *
+     * @param exportWidth Width in pixels or {@code null}
+     * @param exportHeight Height in pixels or {@code null}
+     * @throws IllegalArgumentException If a dimension is not positive
+     */
+    public void setExportResolution(Integer exportWidth, Integer exportHeight)
+            throws IllegalArgumentException {
+        if ((exportWidth != null && exportWidth <= 0)
+                || (exportHeight != null && exportHeight <= 0)) {
+            throw new IllegalArgumentException(
+                    "exportWidth and exportHeight must be positive");
+        }
+        SignatureFieldExtensionState state = getState();
+        state.exportWidth = exportWidth;
+        state.exportHeight = exportHeight;
+    }
+    
+    /**
+     * Gets the {@link TransportMode} used to send the signature to the
+     * server-side.
+     *
+     * @return The {@link TransportMode}
+     */
+    public TransportMode getTransportMode() {
+        return getState(false).transportMode;
+    }
+
+    /**
+     * Sets the {@link TransportMode} used to send the signature to the
+     * server-side.
+     *
+     * @param transportMode The {@link TransportMode}. Must not be
+     * {@code null}!
+     * @throws NullPointerException If {@code transportMode} is {@code null}
+     */
+    public void setTransportMode(TransportMode transportMode)
+            throws NullPointerException {
+        if (transportMode == null) {
+            throw new NullPointerException("transportMode must not be null!");
+        }
+        getState().transportMode = transportMode;
+    }
+    
+}
\ No newline at end of file
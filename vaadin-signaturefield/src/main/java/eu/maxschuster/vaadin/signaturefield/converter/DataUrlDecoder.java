@@ -0,0 +1,243 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.converter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Decodes the Base64 payload of an RFC 2397 data url {@link String} directly
+ * into an {@link OutputStream} or {@link WritableByteChannel}.<br>
+ * <br>
+ * Unlike {@link StringToByteArrayConverter} and
+ * {@link StringToDataUrlConverter} the decoded contents are never held in
+ * memory as a whole. A fixed-size buffer is used instead, so large signatures
+ * can be written straight into a file or a database blob.
+ *
+ * @author Max Schuster
+ */
+public final class DataUrlDecoder {
+
+    /**
+     * Size of the buffer used while decoding
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Marker for characters that are not part of the Base64 alphabet
+     */
+    private static final int INVALID = -1;
+
+    /**
+     * Marker for whitespace that is ignored
+     */
+    private static final int WHITESPACE = -2;
+
+    /**
+     * Maps ASCII characters to their Base64 values
+     */
+    private static final int[] DECODE_TABLE = new int[128];
+
+    static {
+        for (int i = 0; i < DECODE_TABLE.length; i++) {
+            DECODE_TABLE[i] = INVALID;
+        }
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+                + "abcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE_TABLE[alphabet.charAt(i)] = i;
+        }
+        DECODE_TABLE[' '] = WHITESPACE;
+        DECODE_TABLE['\t'] = WHITESPACE;
+        DECODE_TABLE['\r'] = WHITESPACE;
+        DECODE_TABLE['\n'] = WHITESPACE;
+    }
+
+    /**
+     * Target of the decoded bytes
+     */
+    private interface Sink {
+
+        void write(byte[] buffer, int length) throws IOException;
+
+    }
+
+    private DataUrlDecoder() {
+    }
+
+    /**
+     * Decodes the payload of the given data url into the given
+     * {@link OutputStream}. The stream is not closed.
+     *
+     * @param dataUrl The Base64 encoded RFC 2397 data url
+     * @param out The stream to write the decoded bytes to
+     * @return Number of bytes written
+     * @throws MalformedURLException If the data url is malformed or not
+     * Base64 encoded
+     * @throws IOException If writing to the stream fails
+     */
+    public static long decode(CharSequence dataUrl, final OutputStream out)
+            throws MalformedURLException, IOException {
+        return decode(dataUrl, new Sink() {
+
+            @Override
+            public void write(byte[] buffer, int length) throws IOException {
+                out.write(buffer, 0, length);
+            }
+        });
+    }
+
+    /**
+     * Decodes the payload of the given data url into the given
+     * {@link WritableByteChannel}. The channel is not closed.
+     *
+     * @param dataUrl The Base64 encoded RFC 2397 data url
+     * @param channel The channel to write the decoded bytes to
+     * @return Number of bytes written
+     * @throws MalformedURLException If the data url is malformed or not
+     * Base64 encoded
+     * @throws IOException If writing to the channel fails
+     */
+    public static long decode(CharSequence dataUrl,
+            final WritableByteChannel channel)
+            throws MalformedURLException, IOException {
+        return decode(dataUrl, new Sink() {
+
+            private ByteBuffer byteBuffer;
+
+            @Override
+            public void write(byte[] buffer, int length) throws IOException {
+                if (byteBuffer == null) {
+                    byteBuffer = ByteBuffer.wrap(buffer);
+                }
+                byteBuffer.clear().limit(length);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds the start of the Base64 payload of the given data url.
+     *
+     * @param dataUrl The data url
+     * @return Index of the first payload character
+     * @throws MalformedURLException If the data url is malformed or not
+     * Base64 encoded
+     */
+    static int findPayload(CharSequence dataUrl) throws MalformedURLException {
+        if (dataUrl == null) {
+            throw new MalformedURLException("dataUrl must not be null!");
+        }
+        if (!regionMatches(dataUrl, 0, "data:")) {
+            throw new MalformedURLException("Not a data url");
+        }
+        int length = dataUrl.length();
+        int comma = -1;
+        for (int i = 5; i < length; i++) {
+            if (dataUrl.charAt(i) == ',') {
+                comma = i;
+                break;
+            }
+        }
+        if (comma < 0) {
+            throw new MalformedURLException("Data url has no payload");
+        }
+        if (comma < 12 || !regionMatches(dataUrl, comma - 7, ";base64")) {
+            throw new MalformedURLException(
+                    "Only Base64 encoded data urls are supported");
+        }
+        return comma + 1;
+    }
+
+    private static boolean regionMatches(CharSequence value, int offset,
+            String lowerCasePrefix) {
+        if (offset < 0 || value.length() < offset + lowerCasePrefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCasePrefix.length(); i++) {
+            if (Character.toLowerCase(value.charAt(offset + i))
+                    != lowerCasePrefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long decode(CharSequence dataUrl, Sink sink)
+            throws MalformedURLException, IOException {
+        int start = findPayload(dataUrl);
+        int length = dataUrl.length();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int position = 0;
+        long total = 0;
+        int bits = 0;
+        int count = 0;
+        int padding = 0;
+        for (int i = start; i < length; i++) {
+            char c = dataUrl.charAt(i);
+            if (c == '=') {
+                padding++;
+                continue;
+            }
+            int value = c < 128 ? DECODE_TABLE[c] : INVALID;
+            if (value == WHITESPACE) {
+                continue;
+            }
+            if (value == INVALID || padding > 0) {
+                throw new MalformedURLException(
+                        "Illegal Base64 character at index " + i);
+            }
+            bits = (bits << 6) | value;
+            if (++count == 4) {
+                if (position + 3 > buffer.length) {
+                    sink.write(buffer, position);
+                    total += position;
+                    position = 0;
+                }
+                buffer[position++] = (byte) (bits >> 16);
+                buffer[position++] = (byte) (bits >> 8);
+                buffer[position++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 1 || padding > 2) {
+            throw new MalformedURLException("Truncated Base64 payload");
+        }
+        if (position + 2 > buffer.length) {
+            sink.write(buffer, position);
+            total += position;
+            position = 0;
+        }
+        if (count == 2) {
+            buffer[position++] = (byte) (bits >> 4);
+        } else if (count == 3) {
+            buffer[position++] = (byte) (bits >> 10);
+            buffer[position++] = (byte) (bits >> 2);
+        }
+        if (position > 0) {
+            sink.write(buffer, position);
+            total += position;
+        }
+        return total;
+    }
+
+}
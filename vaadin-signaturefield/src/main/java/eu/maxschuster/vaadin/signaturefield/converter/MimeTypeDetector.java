@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.converter;
+
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import java.nio.ByteBuffer;
+
+/**
+ * Detects the {@link MimeType} of image data by its magic number.<br>
+ * <br>
+ * Only the formats known to {@link MimeType} are detected. The detection
+ * reads at most the first few bytes, doesn't allocate and doesn't throw
+ * exceptions if the format is unknown.
+ *
+ * @author Max Schuster
+ */
+public final class MimeTypeDetector {
+
+    /**
+     * PNG file signature
+     */
+    private static final byte[] PNG_SIGNATURE = {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'
+    };
+
+    /**
+     * JPEG SOI marker followed by the first byte of the next marker
+     */
+    private static final byte[] JPEG_SIGNATURE = {
+        (byte) 0xff, (byte) 0xd8, (byte) 0xff
+    };
+
+    /**
+     * RIFF container header of WebP files
+     */
+    private static final byte[] RIFF_SIGNATURE = {'R', 'I', 'F', 'F'};
+
+    /**
+     * RIFF form type of WebP files at offset 8
+     */
+    private static final byte[] WEBP_SIGNATURE = {'W', 'E', 'B', 'P'};
+
+    /**
+     * ISO base media file type box of AVIF files at offset 4
+     */
+    private static final byte[] FTYP_SIGNATURE = {'f', 't', 'y', 'p'};
+
+    /**
+     * AVIF image brand at offset 8
+     */
+    private static final byte[] AVIF_SIGNATURE = {'a', 'v', 'i', 'f'};
+
+    /**
+     * AVIF image sequence brand at offset 8
+     */
+    private static final byte[] AVIS_SIGNATURE = {'a', 'v', 'i', 's'};
+
+    private MimeTypeDetector() {
+    }
+
+    /**
+     * Detects the {@link MimeType} of the given image data.
+     *
+     * @param data The image data
+     * @return The detected {@link MimeType} or {@code null} if the format is
+     * unknown
+     */
+    public static MimeType detect(byte[] data) {
+        return data != null ? detect(data, 0, data.length) : null;
+    }
+
+    /**
+     * Detects the {@link MimeType} of the image data in the given range of
+     * the array.
+     *
+     * @param data The array containing the image data
+     * @param offset Start of the image data
+     * @param length Length of the image data
+     * @return The detected {@link MimeType} or {@code null} if the format is
+     * unknown
+     * @throws IndexOutOfBoundsException If the range is outside the array
+     */
+    public static MimeType detect(byte[] data, int offset, int length)
+            throws IndexOutOfBoundsException {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("Illegal range " + offset
+                    + "+" + length + " for array of length " + data.length);
+        }
+        if (startsWith(data, offset, length, PNG_SIGNATURE)) {
+            return MimeType.PNG;
+        }
+        if (startsWith(data, offset, length, JPEG_SIGNATURE)) {
+            return MimeType.JPEG;
+        }
+        if (startsWith(data, offset, length, RIFF_SIGNATURE)
+                && startsWith(data, offset + 8, length - 8, WEBP_SIGNATURE)) {
+            return MimeType.WEBP;
+        }
+        if (startsWith(data, offset + 4, length - 4, FTYP_SIGNATURE)
+                && (startsWith(data, offset + 8, length - 8, AVIF_SIGNATURE)
+                || startsWith(data, offset + 8, length - 8, AVIS_SIGNATURE))) {
+            return MimeType.AVIF;
+        }
+        return null;
+    }
+
+    /**
+     * Detects the {@link MimeType} of the image data between the position and
+     * the limit of the given buffer. The position of the buffer is not
+     * changed.
+     *
+     * @param buffer The buffer containing the image data
+     * @return The detected {@link MimeType} or {@code null} if the format is
+     * unknown
+     */
+    public static MimeType detect(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            return detect(buffer.array(),
+                    buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining());
+        }
+        if (startsWith(buffer, 0, PNG_SIGNATURE)) {
+            return MimeType.PNG;
+        }
+        if (startsWith(buffer, 0, JPEG_SIGNATURE)) {
+            return MimeType.JPEG;
+        }
+        if (startsWith(buffer, 0, RIFF_SIGNATURE)
+                && startsWith(buffer, 8, WEBP_SIGNATURE)) {
+            return MimeType.WEBP;
+        }
+        if (startsWith(buffer, 4, FTYP_SIGNATURE)
+                && (startsWith(buffer, 8, AVIF_SIGNATURE)
+                || startsWith(buffer, 8, AVIS_SIGNATURE))) {
+            return MimeType.AVIF;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int length,
+            byte[] signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (data[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int offset,
+            byte[] signature) {
+        if (buffer.remaining() < offset + signature.length) {
+            return false;
+        }
+        int position = buffer.position() + offset;
+        for (int i = 0; i < signature.length; i++) {
+            if (buffer.get(position + i) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
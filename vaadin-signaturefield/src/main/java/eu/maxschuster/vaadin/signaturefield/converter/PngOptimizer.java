@@ -0,0 +1,498 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.converter;
+
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javax.imageio.ImageIO;
+
+/**
+ * Re-encodes the 32-bit RGBA PNGs produced by the canvas as indexed PNGs with
+ * a small palette and maximum deflate compression.<br>
+ * <br>
+ * Signatures usually consist of a single pen color and its anti-aliased
+ * edges. If the image has no more than {@link #getMaxColors()} colors the
+ * palette is exact. Otherwise the colors are quantized to the most frequent
+ * colors. Depending on the palette size a bit depth of 1, 2, 4 or 8 is used.
+ * If the result isn't smaller than the original image, the original image is
+ * returned.<br>
+ * <br>
+ * Re-encoding is CPU intensive. Use {@link #optimizeAsync(byte[])} to run it
+ * on a bounded worker pool instead of the thread holding the session lock.
+ *
+ * @author Max Schuster
+ */
+public class PngOptimizer implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default maximum size of the palette
+     */
+    public static final int DEFAULT_MAX_COLORS = 16;
+
+    /**
+     * PNG file signature
+     */
+    private static final byte[] PNG_SIGNATURE = {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'
+    };
+
+    /**
+     * PNG color type of indexed images
+     */
+    private static final int COLOR_TYPE_INDEXED = 3;
+
+    /**
+     * Maximum size of the palette
+     */
+    private final int maxColors;
+
+    /**
+     * Lazily creates the default worker pool
+     */
+    private static class DefaultExecutorHolder {
+
+        private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+        private static ThreadPoolExecutor createExecutor() {
+            int threads = Math.max(1,
+                    Runtime.getRuntime().availableProcessors() / 2);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                    threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<Runnable>(threads * 64),
+                    new ThreadFactory() {
+
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "signaturefield-png-"
+                            + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }, new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+
+    }
+
+    /**
+     * Creates a new {@link PngOptimizer} with a palette of at most
+     * {@link #DEFAULT_MAX_COLORS} colors.
+     */
+    public PngOptimizer() {
+        this(DEFAULT_MAX_COLORS);
+    }
+
+    /**
+     * Creates a new {@link PngOptimizer} with the given maximum palette size.
+     * A palette of 2 colors results in monochrome 1-bit images.
+     *
+     * @param maxColors Maximum size of the palette between 2 and 256
+     * @throws IllegalArgumentException If maxColors is out of range
+     */
+    public PngOptimizer(int maxColors) throws IllegalArgumentException {
+        if (maxColors < 2 || maxColors > 256) {
+            throw new IllegalArgumentException(
+                    "maxColors must be between 2 and 256");
+        }
+        this.maxColors = maxColors;
+    }
+
+    /**
+     * @return Maximum size of the palette
+     */
+    public int getMaxColors() {
+        return maxColors;
+    }
+
+    /**
+     * Gets the shared default worker pool. Its threads are daemon threads and
+     * its queue is bounded, so tasks are rejected with a
+     * {@link RejectedExecutionException} instead of piling up if it is
+     * saturated.
+     *
+     * @return The default {@link Executor}
+     */
+    public static Executor getDefaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Re-encodes the given PNG image as indexed PNG. Images in other formats
+     * are returned unchanged.
+     *
+     * @param data The image data
+     * @return The re-encoded image or the original image if it isn't a PNG or
+     * re-encoding doesn't make it smaller
+     * @throws IOException If the image can't be decoded
+     */
+    public byte[] optimize(byte[] data) throws IOException {
+        if (data == null || MimeTypeDetector.detect(data) != MimeType.PNG) {
+            return data;
+        }
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+        if (image == null) {
+            throw new IOException("Unable to decode the PNG image");
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        byte[] optimized = encode(pixels, width, height);
+        return optimized.length < data.length ? optimized : data;
+    }
+
+    /**
+     * Re-encodes the given PNG image on the default worker pool.
+     *
+     * @param data The image data
+     * @return A future of the re-encoded image. Fails with an
+     * {@link UncheckedIOException} if the image can't be decoded.
+     * @throws RejectedExecutionException If the worker pool is saturated
+     * @see #optimize(byte[])
+     * @see #getDefaultExecutor()
+     */
+    public CompletableFuture<byte[]> optimizeAsync(byte[] data)
+            throws RejectedExecutionException {
+        return optimizeAsync(data, getDefaultExecutor());
+    }
+
+    /**
+     * Re-encodes the given PNG image using the given {@link Executor}.
+     *
+     * @param data The image data
+     * @param executor The {@link Executor} to run on
+     * @return A future of the re-encoded image. Fails with an
+     * {@link UncheckedIOException} if the image can't be decoded.
+     * @throws RejectedExecutionException If the executor rejects the task
+     * @see #optimize(byte[])
+     */
+    public CompletableFuture<byte[]> optimizeAsync(final byte[] data,
+            Executor executor) throws RejectedExecutionException {
+        return CompletableFuture.supplyAsync(new Supplier<byte[]>() {
+
+            @Override
+            public byte[] get() {
+                try {
+                    return optimize(data);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Encodes the given ARGB pixels as indexed PNG.
+     *
+     * @param pixels ARGB pixels
+     * @param width Width of the image
+     * @param height Height of the image
+     * @return The PNG image
+     * @throws IOException Should not happen
+     */
+    byte[] encode(int[] pixels, int width, int height) throws IOException {
+        int size = width * height;
+        // All fully transparent pixels look the same
+        for (int i = 0; i < size; i++) {
+            if ((pixels[i] >>> 24) == 0) {
+                pixels[i] = 0;
+            }
+        }
+        int[] palette = findExactPalette(pixels, size);
+        byte[] indices = new byte[size];
+        if (palette != null) {
+            sortPalette(palette);
+            mapExact(pixels, size, palette, indices);
+        } else {
+            palette = quantize(pixels, size, indices);
+        }
+        return write(palette, indices, width, height);
+    }
+
+    /**
+     * Collects the distinct colors of the image.
+     *
+     * @return The colors or {@code null} if there are more than
+     * {@link #maxColors}
+     */
+    private int[] findExactPalette(int[] pixels, int size) {
+        int[] colors = new int[maxColors];
+        int count = 0;
+        int last = 0;
+        boolean hasLast = false;
+        outer:
+        for (int i = 0; i < size; i++) {
+            int color = pixels[i];
+            // Neighbouring pixels usually have the same color
+            if (hasLast && color == last) {
+                continue;
+            }
+            for (int c = 0; c < count; c++) {
+                if (colors[c] == color) {
+                    last = color;
+                    hasLast = true;
+                    continue outer;
+                }
+            }
+            if (count == maxColors) {
+                return null;
+            }
+            colors[count++] = color;
+            last = color;
+            hasLast = true;
+        }
+        return Arrays.copyOf(colors, Math.max(count, 1));
+    }
+
+    /**
+     * Sorts the palette so that translucent colors come first, which keeps
+     * the tRNS chunk short.
+     */
+    private static void sortPalette(int[] palette) {
+        // Flip the sign bit to sort by the unsigned ARGB value, which orders
+        // the colors by their alpha
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] ^= Integer.MIN_VALUE;
+        }
+        Arrays.sort(palette);
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] ^= Integer.MIN_VALUE;
+        }
+    }
+
+    private static void mapExact(int[] pixels, int size, int[] palette,
+            byte[] indices) {
+        int last = palette[0];
+        int lastIndex = 0;
+        for (int i = 0; i < size; i++) {
+            int color = pixels[i];
+            if (color != last) {
+                for (int c = 0; c < palette.length; c++) {
+                    if (palette[c] == color) {
+                        lastIndex = c;
+                        break;
+                    }
+                }
+                last = color;
+            }
+            indices[i] = (byte) lastIndex;
+        }
+    }
+
+    /**
+     * Reduces the colors to 4 bits per channel, uses the most frequent of them
+     * as palette and maps each pixel to the nearest palette color.
+     *
+     * @return The palette
+     */
+    private int[] quantize(int[] pixels, int size, byte[] indices) {
+        int[] histogram = new int[1 << 16];
+        for (int i = 0; i < size; i++) {
+            histogram[bucket(pixels[i])]++;
+        }
+        int used = 0;
+        for (int b = 0; b < histogram.length; b++) {
+            if (histogram[b] != 0) {
+                used++;
+            }
+        }
+        // Sort the used buckets by their frequency
+        long[] ranked = new long[used];
+        int r = 0;
+        for (int b = 0; b < histogram.length; b++) {
+            if (histogram[b] != 0) {
+                ranked[r++] = ((long) histogram[b] << 16) | b;
+            }
+        }
+        Arrays.sort(ranked);
+        int colors = Math.min(maxColors, used);
+        int[] palette = new int[colors];
+        for (int c = 0; c < colors; c++) {
+            palette[c] = expand((int) (ranked[used - 1 - c] & 0xffff));
+        }
+        sortPalette(palette);
+
+        // Reuse the histogram as bucket to palette index lookup table
+        Arrays.fill(histogram, -1);
+        for (int i = 0; i < size; i++) {
+            int b = bucket(pixels[i]);
+            int index = histogram[b];
+            if (index < 0) {
+                index = histogram[b] = nearest(palette, expand(b));
+            }
+            indices[i] = (byte) index;
+        }
+        return palette;
+    }
+
+    /**
+     * @return The ARGB 4444 bucket of the given ARGB color
+     */
+    private static int bucket(int argb) {
+        return ((argb >>> 16) & 0xf000) | ((argb >>> 12) & 0x0f00)
+                | ((argb >>> 8) & 0x00f0) | ((argb >>> 4) & 0x000f);
+    }
+
+    /**
+     * @return The ARGB color in the center of the given bucket
+     */
+    private static int expand(int bucket) {
+        int a = ((bucket >>> 12) & 0xf) * 0x11;
+        if (a == 0) {
+            return 0;
+        }
+        return (a << 24) | (((bucket >>> 8) & 0xf) * 0x11 << 16)
+                | (((bucket >>> 4) & 0xf) * 0x11 << 8)
+                | ((bucket & 0xf) * 0x11);
+    }
+
+    /**
+     * Finds the nearest palette color comparing premultiplied channels, so
+     * that colors with a low alpha are considered similar.
+     */
+    private static int nearest(int[] palette, int argb) {
+        int best = 0;
+        long bestDistance = Long.MAX_VALUE;
+        for (int c = 0; c < palette.length; c++) {
+            long distance = distance(palette[c], argb);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static long distance(int c1, int c2) {
+        int a1 = c1 >>> 24;
+        int a2 = c2 >>> 24;
+        long da = (a1 - a2) * 255L;
+        long dr = ((c1 >>> 16) & 0xff) * a1 - ((c2 >>> 16) & 0xff) * a2;
+        long dg = ((c1 >>> 8) & 0xff) * a1 - ((c2 >>> 8) & 0xff) * a2;
+        long db = (c1 & 0xff) * a1 - (c2 & 0xff) * a2;
+        return da * da + dr * dr + dg * dg + db * db;
+    }
+
+    /**
+     * Writes the indexed PNG file.
+     */
+    private static byte[] write(int[] palette, byte[] indices, int width,
+            int height) throws IOException {
+        int bitDepth = palette.length <= 2 ? 1 : palette.length <= 4 ? 2
+                : palette.length <= 16 ? 4 : 8;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                indices.length * bitDepth / 8 / 4 + 256);
+        out.write(PNG_SIGNATURE);
+
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(1024);
+        DataOutputStream data = new DataOutputStream(chunk);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeByte(bitDepth);
+        data.writeByte(COLOR_TYPE_INDEXED);
+        data.writeByte(0); // deflate
+        data.writeByte(0); // adaptive filtering
+        data.writeByte(0); // no interlace
+        writeChunk(out, "IHDR", chunk);
+
+        int translucent = 0;
+        for (int c = 0; c < palette.length; c++) {
+            int color = palette[c];
+            data.writeByte(color >>> 16);
+            data.writeByte(color >>> 8);
+            data.writeByte(color);
+            if ((color >>> 24) != 0xff) {
+                translucent = c + 1;
+            }
+        }
+        writeChunk(out, "PLTE", chunk);
+
+        if (translucent > 0) {
+            for (int c = 0; c < translucent; c++) {
+                data.writeByte(palette[c] >>> 24);
+            }
+            writeChunk(out, "tRNS", chunk);
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(chunk,
+                    deflater, 8192);
+            int pixelsPerByte = 8 / bitDepth;
+            byte[] row = new byte[1 + (width + pixelsPerByte - 1)
+                    / pixelsPerByte];
+            for (int y = 0; y < height; y++) {
+                // Filter type 0 works best for indexed images
+                Arrays.fill(row, (byte) 0);
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    int shift = 8 - bitDepth * (x % pixelsPerByte + 1);
+                    row[1 + x / pixelsPerByte] |=
+                            (indices[offset + x] & 0xff) << shift;
+                }
+                deflated.write(row);
+            }
+            deflated.finish();
+        } finally {
+            deflater.end();
+        }
+        writeChunk(out, "IDAT", chunk);
+        writeChunk(out, "IEND", chunk);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the contents of the given buffer as chunk and resets the buffer.
+     */
+    private static void writeChunk(ByteArrayOutputStream out, String type,
+            ByteArrayOutputStream chunk) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        byte[] data = chunk.toByteArray();
+        chunk.reset();
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(data.length);
+        dataOut.write(typeBytes);
+        dataOut.write(data);
+        dataOut.writeInt((int) crc.getValue());
+    }
+
+}
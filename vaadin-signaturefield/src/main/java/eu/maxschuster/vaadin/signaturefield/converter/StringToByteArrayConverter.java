@@ -21,11 +21,8 @@ import eu.maxschuster.dataurl.DataUrlEncoding;
 import eu.maxschuster.dataurl.DataUrlSerializer;
 import eu.maxschuster.dataurl.IDataUrlSerializer;
 import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
-import java.net.URLConnection;
 import java.util.Locale;
 
 /**
@@ -128,6 +125,16 @@ public class StringToByteArrayConverter implements Converter<String, byte[]> {
             return null;
         }
 
+        // Reject data urls with the wrong MIME-Type before decoding them
+        if (mimeType != null && !matchMimeType(value, mimeType)) {
+            int end = value.indexOf(',');
+            throw new ConversionException("The MIME-Type of the given "
+                    + "RFC 2397 data url String ("
+                    + (end > 0 ? value.substring(0, end) : "no header")
+                    + ") doesn't match the required MimeType ("
+                    + mimeType.getMimeType() + ")" );
+        }
+
         try {
             DataUrl dataUrl = serializer.unserialize(value);
 
@@ -197,7 +204,7 @@ public class StringToByteArrayConverter implements Converter<String, byte[]> {
      *
      * @param data The image data.
      * @return The matching {@link MimeType}.
-     * @see URLConnection#guessContentTypeFromStream(InputStream)
+     * @see MimeTypeDetector#detect(byte[])
      * @throws IOException If something goes wrong with the data stream.
      * @throws IllegalArgumentException If the guessing resulted in an
      * unsupported MIME-Type.
@@ -206,17 +213,12 @@ public class StringToByteArrayConverter implements Converter<String, byte[]> {
      */
     protected MimeType guessMimeType(byte[] data)
             throws IOException, IllegalArgumentException, NullPointerException {
-        String mimeTypeString;
-        InputStream is = null;
-        try {
-            is = new ByteArrayInputStream(data);
-            mimeTypeString = URLConnection.guessContentTypeFromStream(is);
-        } finally {
-            if (is != null) {
-                is.close();
-            }
+        MimeType guessed = MimeTypeDetector.detect(data);
+        if (guessed == null) {
+            throw new IllegalArgumentException(
+                    "The image data has an unsupported format");
         }
-        return MimeType.valueOfMimeType(mimeTypeString);
+        return guessed;
     }
 
     /**
@@ -228,14 +230,23 @@ public class StringToByteArrayConverter implements Converter<String, byte[]> {
      * @return MIME-Type matches the {@link MimeType}.
      */
     protected boolean matchMimeType(DataUrl dataUrl, MimeType mimeType) {
-        MimeType dataUrlMimeType;
-        try {
-            dataUrlMimeType = MimeType.valueOfMimeType(dataUrl.getMimeType());
-        } catch (IllegalArgumentException e) {
-            // The MIME-Type is not supported
-            return false;
-        }
-        return mimeType.equals(dataUrlMimeType);
+        return mimeType.getMimeType().equals(dataUrl.getMimeType());
+    }
+
+    /**
+     * Matches the MIME-Type in the header of the given RFC 2397 data url
+     * {@link String} with the given {@link MimeType} before the payload gets
+     * decoded. Override it together with
+     * {@link #matchMimeType(DataUrl, MimeType)} if the
+     * {@link IDataUrlSerializer} accepts other headers.
+     *
+     * @param value The RFC 2397 data url {@link String} to match.
+     * @param mimeType The {@link MimeType} to match against.
+     * @return MIME-Type matches the {@link MimeType}.
+     * @see MimeType#fromDataUrl(String)
+     */
+    protected boolean matchMimeType(String value, MimeType mimeType) {
+        return MimeType.fromDataUrl(value) == mimeType;
     }
 
 }
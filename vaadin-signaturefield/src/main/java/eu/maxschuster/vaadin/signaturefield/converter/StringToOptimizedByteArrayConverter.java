@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.converter;
+
+import eu.maxschuster.dataurl.DataUrlSerializer;
+import eu.maxschuster.dataurl.IDataUrlSerializer;
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * A {@link StringToByteArrayConverter} that re-encodes PNG signatures as
+ * indexed PNGs with a {@link PngOptimizer} while converting to the model.
+ * Images in other formats are passed through unchanged.<br>
+ * <br>
+ * A converter has to return its result, so the conversion runs in the
+ * calling thread, which usually holds the session lock. Use it for small
+ * images or outside of requests. To re-encode signatures on the bounded
+ * worker pool without blocking the session lock, register an
+ * {@link eu.maxschuster.vaadin.signaturefield.OptimizedSignatureListener}
+ * instead.
+ *
+ * @author Max Schuster
+ */
+public class StringToOptimizedByteArrayConverter
+        extends StringToByteArrayConverter {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@link PngOptimizer} used to re-encode PNG images
+     */
+    private final PngOptimizer optimizer;
+
+    /**
+     * Creates a new {@link StringToOptimizedByteArrayConverter} with the
+     * given {@link IDataUrlSerializer}, {@link MimeType} and
+     * {@link PngOptimizer}.
+     *
+     * @param serializer {@link IDataUrlSerializer} used to extract the binary
+     * contents of the RFC 2397 data url {@link String}. Must not be
+     * {@code null}!
+     * @param mimeType {@link MimeType} that is used while converting. Must not
+     * be {@code null}!
+     * @param optimizer {@link PngOptimizer} used to re-encode PNG images. Must
+     * not be {@code null}!
+     * @throws NullPointerException If an argument is {@code null}
+     */
+    public StringToOptimizedByteArrayConverter(IDataUrlSerializer serializer,
+            MimeType mimeType, PngOptimizer optimizer)
+            throws NullPointerException {
+        super(serializer, mimeType);
+        if (optimizer == null) {
+            throw new NullPointerException("The optimizer is mandatory and "
+                    + "mustn't be null");
+        }
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * Creates a new {@link StringToOptimizedByteArrayConverter} with the
+     * default {@link IDataUrlSerializer}, the given {@link PngOptimizer} and
+     * automatic {@link MimeType} guessing.
+     *
+     * @param optimizer {@link PngOptimizer} used to re-encode PNG images. Must
+     * not be {@code null}!
+     * @throws NullPointerException If {@code optimizer} is {@code null}
+     */
+    public StringToOptimizedByteArrayConverter(PngOptimizer optimizer)
+            throws NullPointerException {
+        super(new DataUrlSerializer());
+        if (optimizer == null) {
+            throw new NullPointerException("The optimizer is mandatory and "
+                    + "mustn't be null");
+        }
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * Creates a new {@link StringToOptimizedByteArrayConverter} with the
+     * default {@link IDataUrlSerializer}, a default {@link PngOptimizer} and
+     * automatic {@link MimeType} guessing.
+     */
+    public StringToOptimizedByteArrayConverter() {
+        this(new PngOptimizer());
+    }
+
+    @Override
+    public byte[] convertToModel(String value,
+            Class<? extends byte[]> targetType, Locale locale)
+            throws ConversionException {
+        byte[] data = super.convertToModel(value, targetType, locale);
+        try {
+            return optimizer.optimize(data);
+        } catch (IOException e) {
+            throw new ConversionException(e);
+        }
+    }
+
+    /**
+     * @return The {@link PngOptimizer} used to re-encode PNG images
+     */
+    public PngOptimizer getOptimizer() {
+        return optimizer;
+    }
+
+}
@@ -17,6 +17,8 @@
 package eu.maxschuster.vaadin.signaturefield.shared;
 
 import eu.maxschuster.vaadin.signaturefield.SignatureField;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Predefined MIME-Types for the {@link SignatureField}
@@ -26,7 +28,40 @@ import eu.maxschuster.vaadin.signaturefield.SignatureField;
 public enum MimeType {
 
 	PNG("image/png"),
-	JPEG("image/jpeg");
+	JPEG("image/jpeg"),
+	/**
+	 * Not supported by all browsers. The client-side falls
+	 * back to {@link #PNG} if the browser can't encode it.
+	 */
+	WEBP("image/webp"),
+	/**
+	 * Not supported by all browsers. The client-side falls
+	 * back to {@link #WEBP} or {@link #PNG} if the browser
+	 * can't encode it.
+	 */
+	AVIF("image/avif");
+	
+	/**
+	 * Prefix of every RFC 2397 data url
+	 */
+	private static final String DATA_URL_PREFIX = "data:";
+	
+	/**
+	 * Cached copy of {@link #values()}
+	 */
+	private static final MimeType[] VALUES = values();
+	
+	/**
+	 * Lookup table from MIME-Type {@link String} to {@link MimeType}
+	 */
+	private static final Map<String, MimeType> BY_MIME_TYPE =
+			new HashMap<String, MimeType>();
+	
+	static {
+		for (MimeType mime : VALUES) {
+			BY_MIME_TYPE.put(mime.getMimeType(), mime);
+		}
+	}
 	
 	private final String mimeType;
 	
@@ -58,13 +93,54 @@ public enum MimeType {
 			throw new NullPointerException(
                                 "mimeType must not be null!");
 		}
-		for (MimeType mime : values()) {
-			if (mime.getMimeType().equals(mimeType)) {
-				return mime;
+		MimeType mime = BY_MIME_TYPE.get(mimeType);
+		if (mime == null) {
+			throw new IllegalArgumentException(
+					"MIME-Type " + mimeType + " not found!");
+		}
+		return mime;
+	}
+	
+	/**
+	 * Searches the matching {@link MimeType} instance for
+	 * the given MIME-Type {@link String} without throwing
+	 * exceptions.
+	 * 
+	 * @param mimeType MIME-Type as {@link String}
+	 * @return Matching {@link MimeType} or <code>null</code>
+	 * if <code>mimeType</code> is <code>null</code> or not
+	 * supported
+	 */
+	public static MimeType fromMimeType(String mimeType) {
+		return mimeType != null ? BY_MIME_TYPE.get(mimeType) : null;
+	}
+	
+	/**
+	 * Reads the {@link MimeType} of the given RFC 2397 data url
+	 * {@link String} by looking at its header only. The payload
+	 * is neither decoded nor copied.
+	 * 
+	 * @param dataUrl RFC 2397 data url
+	 * @return Matching {@link MimeType} or <code>null</code>
+	 * if <code>dataUrl</code> is <code>null</code>, not a data
+	 * url or has an unsupported MIME-Type
+	 */
+	public static MimeType fromDataUrl(String dataUrl) {
+		if (dataUrl == null || !dataUrl.startsWith(DATA_URL_PREFIX)) {
+			return null;
+		}
+		int offset = DATA_URL_PREFIX.length();
+		for (MimeType mime : VALUES) {
+			String value = mime.getMimeType();
+			int end = offset + value.length();
+			if (dataUrl.length() > end && dataUrl.startsWith(value, offset)) {
+				char next = dataUrl.charAt(end);
+				if (next == ';' || next == ',') {
+					return mime;
+				}
 			}
 		}
-		throw new IllegalArgumentException(
-                        "MIME-Type " + mimeType + " not found!");
+		return null;
 	}
 	
 }
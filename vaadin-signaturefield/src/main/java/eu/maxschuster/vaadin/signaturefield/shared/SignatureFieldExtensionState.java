@@ -37,6 +37,48 @@ public class SignatureFieldExtensionState extends JavaScriptExtensionState {
      */
     public boolean immediate = false;
 
+    /**
+     * Delay in milliseconds after the last pen stroke before an immediate
+     * extension updates the server-side. Strokes within this window are
+     * coalesced into a single update. {@code 0} updates after each stroke.
+     */
+    public int updateDelay = 0;
+
+    /**
+     * Version of the current signature. The client-side only requests the
+     * signature if it doesn't hold this version. {@code null} if the field is
+     * empty.
+     */
+    public String signatureVersion;
+
+    /**
+     * Load the signature image of a read-only extension through
+     * {@link #imageUrl} once it becomes visible instead of sending it inline
+     */
+    public boolean lazyLoadEnabled = false;
+
+    /**
+     * Create the canvas only once the field becomes visible. Only read when
+     * the extension is attached.
+     */
+    public boolean lazyInitEnabled = false;
+
+    /**
+     * Url of the signature image if it is loaded lazily, otherwise
+     * {@code null}
+     */
+    public String imageUrl;
+
+    /**
+     * Horizontal offset of the lazily loaded signature image
+     */
+    public int imageX;
+
+    /**
+     * Vertical offset of the lazily loaded signature image
+     */
+    public int imageY;
+
     /**
      * Radius of a single dot.
      */
@@ -72,14 +114,77 @@ public class SignatureFieldExtensionState extends JavaScriptExtensionState {
      */
     public double velocityFilterWeight = .7f;
 
+    /**
+     * Minimum time in milliseconds between two recorded points of a stroke.
+     * Defaults to 0, which records every point.
+     */
+    public int throttle = 0;
+
+    /**
+     * Minimum distance in pixels between two recorded points of a stroke.
+     * Defaults to 0, which records every point.
+     */
+    public double minDistance = 0;
+
     /**
      * MIME-Type used to create dataURLs
      */
     public String mimeType = MimeType.PNG.getMimeType();
 
+    /**
+     * Quality between 0 and 1 used to encode lossy formats like JPEG and
+     * WebP. Defaults to 1.
+     */
+    public double quality = 1;
+
+    /**
+     * Crop the generated image to the bounding box of the ink
+     */
+    public boolean trimEnabled = false;
+
+    /**
+     * Padding in pixels that is kept around the ink if the image gets
+     * trimmed
+     */
+    public int trimPadding = 0;
+
+    /**
+     * Canvas pixels per CSS pixel or {@code null} to use the device pixel
+     * ratio of the browser
+     */
+    public Double displayScale;
+
+    /**
+     * Encode the signature image in a Web Worker if the browser supports it
+     */
+    public boolean workerEncodingEnabled = false;
+
+    /**
+     * Width of the exported image in pixels or {@code null} to use the width
+     * of the field
+     */
+    public Integer exportWidth;
+
+    /**
+     * Height of the exported image in pixels or {@code null} to use the
+     * height of the field
+     */
+    public Integer exportHeight;
+
     /**
      * Show a clear button in the signaturefield
      */
     public boolean clearButtonEnabled = false;
 
+    /**
+     * How the signature is sent to the server-side
+     */
+    public TransportMode transportMode = TransportMode.DATA_URL;
+
+    /**
+     * Url the binary signature is posted to if {@link TransportMode#BINARY}
+     * is used
+     */
+    public String uploadUrl;
+
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.shared;
+
+import eu.maxschuster.vaadin.signaturefield.SignatureFieldExtension;
+
+/**
+ * Determines how the client-side of a {@link SignatureFieldExtension}
+ * transfers the captured signature to the server-side.
+ *
+ * @author Max Schuster
+ */
+public enum TransportMode {
+
+    /**
+     * The signature is rendered by the browser and sent as RFC 2397 data url
+     * {@link String}. This is the default.
+     */
+    DATA_URL,
+
+    /**
+     * Only the recorded stroke points are sent. The server-side keeps them as
+     * {@link eu.maxschuster.vaadin.signaturefield.stroke.StrokeSignature} and
+     * no image is created by the browser.
+     */
+    STROKES,
+
+    /**
+     * The signature is rendered by the browser and posted as raw binary image
+     * to an upload url of the extension. This avoids the Base64 encoding of
+     * the image. Browsers that can't post binary data fall back to
+     * {@link #DATA_URL}, the server-side decodes the data url in that case.
+     */
+    BINARY;
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.stroke;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single pen stroke, the {@link StrokePoint}s recorded between pen down
+ * and pen up.
+ *
+ * @author Max Schuster
+ */
+public final class Stroke implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Points of this stroke
+     */
+    private final List<StrokePoint> points;
+
+    /**
+     * Creates a new {@link Stroke} with the given points.
+     *
+     * @param points Points of this stroke. Must not be {@code null}!
+     * @throws NullPointerException If {@code points} is {@code null}
+     */
+    public Stroke(List<StrokePoint> points) throws NullPointerException {
+        if (points == null) {
+            throw new NullPointerException("points must not be null!");
+        }
+        this.points = Collections.unmodifiableList(
+                new ArrayList<StrokePoint>(points));
+    }
+
+    /**
+     * @return Unmodifiable list of the points of this stroke
+     */
+    public List<StrokePoint> getPoints() {
+        return points;
+    }
+
+    /**
+     * @return Number of points of this stroke
+     */
+    public int size() {
+        return points.size();
+    }
+
+    @Override
+    public int hashCode() {
+        return points.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || (obj instanceof Stroke
+                && points.equals(((Stroke) obj).points));
+    }
+
+    @Override
+    public String toString() {
+        return "Stroke{points=" + points + "}";
+    }
+
+}
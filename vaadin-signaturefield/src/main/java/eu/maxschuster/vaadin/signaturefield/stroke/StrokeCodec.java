@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.stroke;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonType;
+import elemental.json.JsonValue;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts {@link Stroke}s from and to the compact JSON representation that
+ * is used between the client-side and the server-side.<br>
+ * <br>
+ * Each stroke is a flat number array. The first element is the timestamp of
+ * the first point in milliseconds followed by four numbers per point: x, y,
+ * the time in milliseconds relative to the first point and the pressure.
+ *
+ * @author Max Schuster
+ */
+public final class StrokeCodec {
+
+    /**
+     * Number of array elements per point
+     */
+    private static final int POINT_SIZE = 4;
+
+    private StrokeCodec() {
+    }
+
+    /**
+     * Decodes a single stroke.
+     *
+     * @param json The JSON representation of the stroke
+     * @return The decoded stroke
+     * @throws IllegalArgumentException If the JSON value is malformed
+     */
+    public static Stroke decodeStroke(JsonValue json)
+            throws IllegalArgumentException {
+        if (json == null || json.getType() != JsonType.ARRAY) {
+            throw new IllegalArgumentException("A stroke must be an array");
+        }
+        JsonArray array = (JsonArray) json;
+        int length = array.length();
+        if (length == 0 || (length - 1) % POINT_SIZE != 0) {
+            throw new IllegalArgumentException("Illegal stroke length "
+                    + length);
+        }
+        long startTime = (long) array.getNumber(0);
+        List<StrokePoint> points = new ArrayList<StrokePoint>(
+                (length - 1) / POINT_SIZE);
+        for (int i = 1; i < length; i += POINT_SIZE) {
+            points.add(new StrokePoint(
+                    array.getNumber(i),
+                    array.getNumber(i + 1),
+                    startTime + (long) array.getNumber(i + 2),
+                    array.getNumber(i + 3)));
+        }
+        return new Stroke(points);
+    }
+
+    /**
+     * Decodes a list of strokes.
+     *
+     * @param json The JSON array containing the strokes
+     * @return The decoded strokes
+     * @throws IllegalArgumentException If the JSON value is malformed
+     */
+    public static List<Stroke> decodeStrokes(JsonValue json)
+            throws IllegalArgumentException {
+        if (json == null || json.getType() != JsonType.ARRAY) {
+            throw new IllegalArgumentException("Strokes must be an array");
+        }
+        JsonArray array = (JsonArray) json;
+        int length = array.length();
+        List<Stroke> strokes = new ArrayList<Stroke>(length);
+        for (int i = 0; i < length; i++) {
+            strokes.add(decodeStroke(array.get(i)));
+        }
+        return strokes;
+    }
+
+    /**
+     * Encodes a single stroke.
+     *
+     * @param stroke The stroke to encode
+     * @return The JSON representation of the stroke
+     */
+    public static JsonArray encodeStroke(Stroke stroke) {
+        JsonArray array = Json.createArray();
+        List<StrokePoint> points = stroke.getPoints();
+        long startTime = points.isEmpty() ? 0 : points.get(0).getTime();
+        array.set(0, startTime);
+        int index = 1;
+        for (StrokePoint point : points) {
+            array.set(index++, point.getX());
+            array.set(index++, point.getY());
+            array.set(index++, point.getTime() - startTime);
+            array.set(index++, point.getPressure());
+        }
+        return array;
+    }
+
+    /**
+     * Encodes a list of strokes.
+     *
+     * @param strokes The strokes to encode
+     * @return The JSON array containing the strokes
+     */
+    public static JsonArray encodeStrokes(List<Stroke> strokes) {
+        JsonArray array = Json.createArray();
+        int index = 0;
+        for (Stroke stroke : strokes) {
+            array.set(index++, encodeStroke(stroke));
+        }
+        return array;
+    }
+
+}
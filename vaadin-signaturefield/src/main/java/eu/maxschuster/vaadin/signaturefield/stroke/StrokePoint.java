@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.stroke;
+
+import java.io.Serializable;
+
+/**
+ * A single point of a {@link Stroke} as recorded by the client-side.
+ *
+ * @author Max Schuster
+ */
+public final class StrokePoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Horizontal position in CSS pixels relative to the canvas
+     */
+    private final double x;
+
+    /**
+     * Vertical position in CSS pixels relative to the canvas
+     */
+    private final double y;
+
+    /**
+     * Timestamp in milliseconds
+     */
+    private final long time;
+
+    /**
+     * Pen pressure between 0 and 1 or 0 if the device doesn't report one
+     */
+    private final double pressure;
+
+    /**
+     * Creates a new {@link StrokePoint}.
+     *
+     * @param x Horizontal position in CSS pixels relative to the canvas
+     * @param y Vertical position in CSS pixels relative to the canvas
+     * @param time Timestamp in milliseconds
+     * @param pressure Pen pressure between 0 and 1 or 0 if the device doesn't
+     * report one
+     */
+    public StrokePoint(double x, double y, long time, double pressure) {
+        this.x = x;
+        this.y = y;
+        this.time = time;
+        this.pressure = pressure;
+    }
+
+    /**
+     * @return Horizontal position in CSS pixels relative to the canvas
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return Vertical position in CSS pixels relative to the canvas
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return Timestamp in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return Pen pressure between 0 and 1 or 0 if the device doesn't report
+     * one
+     */
+    public double getPressure() {
+        return pressure;
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(x);
+        bits = 31 * bits + Double.doubleToLongBits(y);
+        bits = 31 * bits + time;
+        bits = 31 * bits + Double.doubleToLongBits(pressure);
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof StrokePoint)) {
+            return false;
+        }
+        StrokePoint other = (StrokePoint) obj;
+        return Double.doubleToLongBits(x) == Double.doubleToLongBits(other.x)
+                && Double.doubleToLongBits(y) == Double.doubleToLongBits(other.y)
+                && time == other.time
+                && Double.doubleToLongBits(pressure)
+                == Double.doubleToLongBits(other.pressure);
+    }
+
+    @Override
+    public String toString() {
+        return "StrokePoint{x=" + x + ", y=" + y + ", time=" + time
+                + ", pressure=" + pressure + "}";
+    }
+
+}
@@ -0,0 +1,590 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.stroke;
+
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import eu.maxschuster.vaadin.signaturefield.shared.SignatureFieldExtensionState;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders a {@link StrokeSignature} to an image at the server-side.<br>
+ * <br>
+ * The curves and their velocity based width are calculated the same way
+ * <a href="https://github.com/szimek/signature_pad">signature_pad</a> does it
+ * at the client-side. The renderer draws into a pixel buffer that is reused
+ * by subsequent calls as long as it is large enough, so a single instance
+ * can render many signatures without allocating new images.<br>
+ * <br>
+ * Instances are not thread-safe. Use one instance per thread.
+ *
+ * @author Max Schuster
+ * @see <a href="https://github.com/szimek/signature_pad">signature_pad</a>
+ */
+public class StrokeRenderer {
+
+    /**
+     * Color model of the pixel buffer (non-premultiplied ARGB)
+     */
+    private static final ColorModel ARGB = ColorModel.getRGBdefault();
+
+    /**
+     * Color model used to write formats without alpha channel
+     */
+    private static final DirectColorModel RGB = new DirectColorModel(24,
+            0xff0000, 0xff00, 0xff);
+
+    /**
+     * Number of steps used to approximate the length of a curve
+     */
+    private static final int LENGTH_STEPS = 10;
+
+    private double minWidth = .5;
+
+    private double maxWidth = 2.5;
+
+    private Double dotSize;
+
+    private double velocityFilterWeight = .7;
+
+    private int penColor = 0xff000000;
+
+    private int backgroundColor = 0x00000000;
+
+    /**
+     * Pixel buffer (non-premultiplied ARGB)
+     */
+    private int[] pixels = new int[0];
+
+    /**
+     * Coverage of the path that is currently drawn
+     */
+    private byte[] coverage = new byte[0];
+
+    /**
+     * Size of the last rendered image
+     */
+    private int width, height;
+
+    /**
+     * Image wrapping the pixel buffer
+     */
+    private BufferedImage image;
+
+    /**
+     * Bounds of the path that is currently drawn
+     */
+    private int dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY;
+
+    /**
+     * Scale from signature to image coordinates
+     */
+    private double scaleX, scaleY, widthScale;
+
+    /**
+     * The last four points of the current stroke in signature coordinates
+     */
+    private final double[] px = new double[4], py = new double[4];
+
+    private final long[] pt = new long[4];
+
+    private int pointCount;
+
+    private double lastVelocity, lastWidth;
+
+    /**
+     * Control points calculated by {@link #calculateControlPoints(int)}
+     */
+    private double c1x, c1y, c2x, c2y;
+
+    /**
+     * Creates a new {@link StrokeRenderer} with the default options of
+     * signature_pad.
+     */
+    public StrokeRenderer() {
+    }
+
+    /**
+     * Creates a new {@link StrokeRenderer} that uses the pen options of the
+     * given state.
+     *
+     * @param state The state to take the options from
+     */
+    public StrokeRenderer(SignatureFieldExtensionState state) {
+        setMinWidth(state.minWidth);
+        setMaxWidth(state.maxWidth);
+        setDotSize(state.dotSize);
+        setVelocityFilterWeight(state.velocityFilterWeight);
+        setPenColor(state.penColor);
+        setBackgroundColor(state.backgroundColor);
+    }
+
+    /**
+     * @param minWidth Minimum width of a line. Defaults to 0.5.
+     */
+    public void setMinWidth(double minWidth) {
+        this.minWidth = minWidth;
+    }
+
+    /**
+     * @param maxWidth Maximum width of a line. Defaults to 2.5.
+     */
+    public void setMaxWidth(double maxWidth) {
+        this.maxWidth = maxWidth;
+    }
+
+    /**
+     * @param dotSize Radius of a single dot or {@code null} to use the
+     * average of min and max width.
+     */
+    public void setDotSize(Double dotSize) {
+        this.dotSize = dotSize;
+    }
+
+    /**
+     * @param velocityFilterWeight Weight used to modify new velocity based on
+     * the previous velocity. Defaults to 0.7.
+     */
+    public void setVelocityFilterWeight(double velocityFilterWeight) {
+        this.velocityFilterWeight = velocityFilterWeight;
+    }
+
+    /**
+     * @param penColor Color used to draw the lines as CSS color
+     * @throws IllegalArgumentException If the color can't be parsed
+     */
+    public void setPenColor(String penColor) throws IllegalArgumentException {
+        this.penColor = parseColor(penColor);
+    }
+
+    /**
+     * @param backgroundColor Color used to clear the background as CSS color
+     * @throws IllegalArgumentException If the color can't be parsed
+     */
+    public void setBackgroundColor(String backgroundColor)
+            throws IllegalArgumentException {
+        this.backgroundColor = parseColor(backgroundColor);
+    }
+
+    /**
+     * Renders the given signature into the pixel buffer of this renderer.
+     *
+     * @param signature The signature to render
+     * @param width Width of the image in pixels
+     * @param height Height of the image in pixels
+     * @return An image backed by the pixel buffer of this renderer. It is
+     * only valid until the next call of this renderer.
+     * @throws IllegalArgumentException If width or height are not positive
+     */
+    public BufferedImage render(StrokeSignature signature, int width,
+            int height) throws IllegalArgumentException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Illegal image size " + width
+                    + "x" + height);
+        }
+        prepareBuffer(width, height);
+        scaleX = signature.getWidth() > 0
+                ? (double) width / signature.getWidth() : 1;
+        scaleY = signature.getHeight() > 0
+                ? (double) height / signature.getHeight() : 1;
+        widthScale = Math.sqrt(scaleX * scaleY);
+        for (Stroke stroke : signature.getStrokes()) {
+            drawStroke(stroke);
+        }
+        return getImage(ARGB);
+    }
+
+    /**
+     * Renders the given signature and writes it to the given stream.
+     *
+     * @param signature The signature to render
+     * @param mimeType The format of the image
+     * @param width Width of the image in pixels
+     * @param height Height of the image in pixels
+     * @param out The stream to write the image to
+     * @throws IOException If the image couldn't be written
+     */
+    public void write(StrokeSignature signature, MimeType mimeType, int width,
+            int height, OutputStream out) throws IOException {
+        BufferedImage result = render(signature, width, height);
+        if (mimeType == MimeType.JPEG) {
+            // Like the browser does, drop the alpha channel by compositing
+            // over black
+            int size = width * height;
+            for (int i = 0; i < size; i++) {
+                pixels[i] = premultiply(pixels[i]);
+            }
+            result = getImage(RGB);
+        }
+        String format = mimeType.getMimeType().substring(
+                mimeType.getMimeType().indexOf('/') + 1);
+        if (!ImageIO.write(result, format, out)) {
+            throw new IOException("No image writer found for "
+                    + mimeType.getMimeType());
+        }
+    }
+
+    /**
+     * Renders the given signature to a {@code byte[]}.
+     *
+     * @param signature The signature to render
+     * @param mimeType The format of the image
+     * @param width Width of the image in pixels
+     * @param height Height of the image in pixels
+     * @return The encoded image
+     * @throws IOException If the image couldn't be written
+     */
+    public byte[] toByteArray(StrokeSignature signature, MimeType mimeType,
+            int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(signature, mimeType, width, height, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Makes sure the buffers are large enough and clears them with the
+     * background color.
+     */
+    private void prepareBuffer(int width, int height) {
+        int size = width * height;
+        if (pixels.length < size) {
+            pixels = new int[size];
+            coverage = new byte[size];
+            image = null;
+        }
+        if (width != this.width || height != this.height) {
+            this.width = width;
+            this.height = height;
+            image = null;
+        }
+        Arrays.fill(pixels, 0, size, backgroundColor);
+        resetDirty();
+    }
+
+    /**
+     * Wraps the pixel buffer with the given color model.
+     */
+    private BufferedImage getImage(ColorModel colorModel) {
+        if (image == null || image.getColorModel() != colorModel) {
+            int[] masks = colorModel == ARGB
+                    ? new int[]{0xff0000, 0xff00, 0xff, 0xff000000}
+                    : new int[]{0xff0000, 0xff00, 0xff};
+            WritableRaster raster = Raster.createPackedRaster(
+                    new DataBufferInt(pixels, width * height),
+                    width, height, width, masks, null);
+            image = new BufferedImage(colorModel, raster, false, null);
+        }
+        return image;
+    }
+
+    private void drawStroke(Stroke stroke) {
+        pointCount = 0;
+        lastVelocity = 0;
+        lastWidth = (minWidth + maxWidth) / 2;
+        for (StrokePoint point : stroke.getPoints()) {
+            addPoint(point.getX(), point.getY(), point.getTime());
+        }
+        if (pointCount > 0 && pointCount <= 2) {
+            double size = dotSize != null ? dotSize : (minWidth + maxWidth) / 2;
+            drawCircle(px[0] * scaleX, py[0] * scaleY, size * widthScale);
+            fillPath();
+        }
+    }
+
+    private void addPoint(double x, double y, long time) {
+        px[pointCount] = x;
+        py[pointCount] = y;
+        pt[pointCount] = time;
+        pointCount++;
+        if (pointCount > 2) {
+            if (pointCount == 3) {
+                // Copy the first point to reduce the initial lag
+                shift(1);
+                pointCount = 4;
+            }
+            calculateControlPoints(0);
+            double ax = c2x, ay = c2y;
+            calculateControlPoints(1);
+            addCurve(ax, ay, c1x, c1y);
+            shift(-1);
+            pointCount = 3;
+        }
+    }
+
+    /**
+     * Shifts the point window by one position to the right (1) or left (-1).
+     */
+    private void shift(int direction) {
+        if (direction > 0) {
+            for (int i = 3; i > 0; i--) {
+                px[i] = px[i - 1];
+                py[i] = py[i - 1];
+                pt[i] = pt[i - 1];
+            }
+        } else {
+            for (int i = 0; i < 3; i++) {
+                px[i] = px[i + 1];
+                py[i] = py[i + 1];
+                pt[i] = pt[i + 1];
+            }
+        }
+    }
+
+    private void calculateControlPoints(int i) {
+        double dx1 = px[i] - px[i + 1], dy1 = py[i] - py[i + 1];
+        double dx2 = px[i + 1] - px[i + 2], dy2 = py[i + 1] - py[i + 2];
+        double m1x = (px[i] + px[i + 1]) / 2, m1y = (py[i] + py[i + 1]) / 2;
+        double m2x = (px[i + 1] + px[i + 2]) / 2, m2y = (py[i + 1] + py[i + 2]) / 2;
+        double l1 = Math.sqrt(dx1 * dx1 + dy1 * dy1);
+        double l2 = Math.sqrt(dx2 * dx2 + dy2 * dy2);
+        double k = l2 / (l1 + l2);
+        double cmx = m2x + (m1x - m2x) * k, cmy = m2y + (m1y - m2y) * k;
+        double tx = px[i + 1] - cmx, ty = py[i + 1] - cmy;
+        c1x = m1x + tx;
+        c1y = m1y + ty;
+        c2x = m2x + tx;
+        c2y = m2y + ty;
+    }
+
+    /**
+     * Adds the curve from point 1 to point 2 of the window.
+     */
+    private void addCurve(double cax, double cay, double cbx, double cby) {
+        double velocity = pt[2] != pt[1]
+                ? Math.hypot(px[2] - px[1], py[2] - py[1]) / (pt[2] - pt[1])
+                : 1;
+        velocity = velocityFilterWeight * velocity
+                + (1 - velocityFilterWeight) * lastVelocity;
+        double newWidth = Math.max(maxWidth / (velocity + 1), minWidth);
+        drawCurve(px[1] * scaleX, py[1] * scaleY, cax * scaleX, cay * scaleY,
+                cbx * scaleX, cby * scaleY, px[2] * scaleX, py[2] * scaleY,
+                lastWidth, newWidth);
+        lastVelocity = velocity;
+        lastWidth = newWidth;
+    }
+
+    private void drawCurve(double sx, double sy, double ax, double ay,
+            double bx, double by, double ex, double ey, double startWidth,
+            double endWidth) {
+        double length = 0, lx = sx, ly = sy;
+        for (int i = 1; i <= LENGTH_STEPS; i++) {
+            double t = (double) i / LENGTH_STEPS;
+            double cx = bezier(t, sx, ax, bx, ex);
+            double cy = bezier(t, sy, ay, by, ey);
+            length += Math.hypot(cx - lx, cy - ly);
+            lx = cx;
+            ly = cy;
+        }
+        int drawSteps = (int) Math.floor(length);
+        double widthDelta = endWidth - startWidth;
+        for (int i = 0; i < drawSteps; i++) {
+            double t = (double) i / drawSteps;
+            double width = startWidth + t * t * t * widthDelta;
+            drawCircle(bezier(t, sx, ax, bx, ex), bezier(t, sy, ay, by, ey),
+                    width * widthScale);
+        }
+        fillPath();
+    }
+
+    private static double bezier(double t, double start, double c1,
+            double c2, double end) {
+        double u = 1 - t;
+        return start * u * u * u + 3 * c1 * u * u * t + 3 * c2 * u * t * t
+                + end * t * t * t;
+    }
+
+    /**
+     * Adds an anti-aliased circle to the coverage of the current path.
+     */
+    private void drawCircle(double cx, double cy, double radius) {
+        if (Double.isNaN(cx) || Double.isNaN(cy) || radius <= 0) {
+            return;
+        }
+        int minX = Math.max(0, (int) Math.floor(cx - radius - 1));
+        int minY = Math.max(0, (int) Math.floor(cy - radius - 1));
+        int maxX = Math.min(width - 1, (int) Math.ceil(cx + radius + 1));
+        int maxY = Math.min(height - 1, (int) Math.ceil(cy + radius + 1));
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+        for (int y = minY; y <= maxY; y++) {
+            double dy = y + .5 - cy;
+            int row = y * width;
+            for (int x = minX; x <= maxX; x++) {
+                double dx = x + .5 - cx;
+                double c = radius + .5 - Math.sqrt(dx * dx + dy * dy);
+                if (c > 0) {
+                    int value = c >= 1 ? 255 : (int) (c * 255);
+                    if (value > (coverage[row + x] & 0xff)) {
+                        coverage[row + x] = (byte) value;
+                    }
+                }
+            }
+        }
+        dirtyMinX = Math.min(dirtyMinX, minX);
+        dirtyMinY = Math.min(dirtyMinY, minY);
+        dirtyMaxX = Math.max(dirtyMaxX, maxX);
+        dirtyMaxY = Math.max(dirtyMaxY, maxY);
+    }
+
+    /**
+     * Composites the pen color with the coverage of the current path onto
+     * the pixel buffer and resets the coverage.
+     */
+    private void fillPath() {
+        int penAlpha = penColor >>> 24;
+        for (int y = dirtyMinY; y <= dirtyMaxY; y++) {
+            int row = y * width;
+            for (int x = dirtyMinX; x <= dirtyMaxX; x++) {
+                int i = row + x;
+                int c = coverage[i] & 0xff;
+                if (c != 0) {
+                    pixels[i] = blend(pixels[i], penColor,
+                            penAlpha * c / 255);
+                    coverage[i] = 0;
+                }
+            }
+        }
+        resetDirty();
+    }
+
+    private void resetDirty() {
+        dirtyMinX = Integer.MAX_VALUE;
+        dirtyMinY = Integer.MAX_VALUE;
+        dirtyMaxX = -1;
+        dirtyMaxY = -1;
+    }
+
+    /**
+     * Source-over compositing of non-premultiplied ARGB colors.
+     */
+    private static int blend(int dst, int src, int srcAlpha) {
+        if (srcAlpha >= 255) {
+            return src | 0xff000000;
+        }
+        int dstAlpha = dst >>> 24;
+        int outAlpha = srcAlpha + dstAlpha * (255 - srcAlpha) / 255;
+        if (outAlpha == 0) {
+            return 0;
+        }
+        int dstWeight = dstAlpha * (255 - srcAlpha) / 255;
+        int r = (((src >> 16) & 0xff) * srcAlpha
+                + ((dst >> 16) & 0xff) * dstWeight) / outAlpha;
+        int g = (((src >> 8) & 0xff) * srcAlpha
+                + ((dst >> 8) & 0xff) * dstWeight) / outAlpha;
+        int b = ((src & 0xff) * srcAlpha + (dst & 0xff) * dstWeight)
+                / outAlpha;
+        return (outAlpha << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int premultiply(int argb) {
+        int a = argb >>> 24;
+        if (a == 255) {
+            return argb;
+        }
+        int r = ((argb >> 16) & 0xff) * a / 255;
+        int g = ((argb >> 8) & 0xff) * a / 255;
+        int b = (argb & 0xff) * a / 255;
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Parses the CSS color formats used by
+     * {@link eu.maxschuster.vaadin.signaturefield.SampleColors}: named colors
+     * black, white and transparent, hex colors and the rgb() and rgba()
+     * functions.
+     *
+     * @param color The CSS color
+     * @return The color as non-premultiplied ARGB
+     * @throws IllegalArgumentException If the color can't be parsed
+     */
+    static int parseColor(String color) throws IllegalArgumentException {
+        if (color == null) {
+            throw new IllegalArgumentException("color must not be null!");
+        }
+        String c = color.trim().toLowerCase(Locale.ENGLISH);
+        try {
+            if ("black".equals(c)) {
+                return 0xff000000;
+            } else if ("white".equals(c)) {
+                return 0xffffffff;
+            } else if ("transparent".equals(c)) {
+                return 0;
+            } else if (c.startsWith("#")) {
+                return parseHexColor(c.substring(1));
+            } else if (c.startsWith("rgb")) {
+                int start = c.indexOf('('), end = c.lastIndexOf(')');
+                String[] parts = c.substring(start + 1, end).split(",");
+                if (parts.length < 3 || parts.length > 4) {
+                    throw new IllegalArgumentException(
+                            "Unsupported color " + color);
+                }
+                int r = Integer.parseInt(parts[0].trim());
+                int g = Integer.parseInt(parts[1].trim());
+                int b = Integer.parseInt(parts[2].trim());
+                int a = parts.length == 4 ? (int) Math.round(
+                        Double.parseDouble(parts[3].trim()) * 255) : 255;
+                return argb(a, r, g, b);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unsupported color " + color, e);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Unsupported color " + color, e);
+        }
+        throw new IllegalArgumentException("Unsupported color " + color);
+    }
+
+    private static int parseHexColor(String hex) {
+        switch (hex.length()) {
+            case 3:
+            case 4:
+                int value = Integer.parseInt(hex, 16);
+                int shift = (hex.length() - 1) * 4;
+                int r = (value >> shift) & 0xf;
+                int g = (value >> (shift - 4)) & 0xf;
+                int b = (value >> (shift - 8)) & 0xf;
+                int a = hex.length() == 4 ? value & 0xf : 0xf;
+                return argb(a * 17, r * 17, g * 17, b * 17);
+            case 6:
+                return 0xff000000 | Integer.parseInt(hex, 16);
+            case 8:
+                long rgba = Long.parseLong(hex, 16);
+                return (int) ((rgba >>> 8) | ((rgba & 0xff) << 24));
+            default:
+                throw new NumberFormatException("Illegal hex color length");
+        }
+    }
+
+    private static int argb(int a, int r, int g, int b) {
+        return (clamp(a) << 24) | (clamp(r) << 16) | (clamp(g) << 8)
+                | clamp(b);
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+}
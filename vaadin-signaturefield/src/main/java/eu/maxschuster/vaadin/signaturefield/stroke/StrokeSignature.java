@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.stroke;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A signature captured as list of {@link Stroke}s together with the size of
+ * the canvas it has been drawn on.
+ *
+ * @author Max Schuster
+ */
+public final class StrokeSignature implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Width of the canvas in CSS pixels
+     */
+    private final int width;
+
+    /**
+     * Height of the canvas in CSS pixels
+     */
+    private final int height;
+
+    /**
+     * Strokes of this signature
+     */
+    private final List<Stroke> strokes;
+
+    /**
+     * Creates a new {@link StrokeSignature}.
+     *
+     * @param width Width of the canvas in CSS pixels
+     * @param height Height of the canvas in CSS pixels
+     * @param strokes Strokes of this signature. Must not be {@code null}!
+     * @throws NullPointerException If {@code strokes} is {@code null}
+     */
+    public StrokeSignature(int width, int height, List<Stroke> strokes)
+            throws NullPointerException {
+        if (strokes == null) {
+            throw new NullPointerException("strokes must not be null!");
+        }
+        this.width = width;
+        this.height = height;
+        this.strokes = Collections.unmodifiableList(
+                new ArrayList<Stroke>(strokes));
+    }
+
+    /**
+     * @return Width of the canvas in CSS pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return Height of the canvas in CSS pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Unmodifiable list of the strokes of this signature
+     */
+    public List<Stroke> getStrokes() {
+        return strokes;
+    }
+
+    /**
+     * Creates a new {@link StrokeSignature} with the given {@link Stroke}
+     * appended to the strokes of this signature.
+     *
+     * @param stroke The stroke to append
+     * @return A new {@link StrokeSignature} instance
+     */
+    public StrokeSignature withStroke(Stroke stroke) {
+        List<Stroke> newStrokes = new ArrayList<Stroke>(strokes.size() + 1);
+        newStrokes.addAll(strokes);
+        newStrokes.add(stroke);
+        return new StrokeSignature(width, height, newStrokes);
+    }
+
+    /**
+     * A signature is considered empty if it has no strokes.
+     *
+     * @return Signature is empty
+     */
+    public boolean isEmpty() {
+        return strokes.isEmpty();
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * width + height) + strokes.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof StrokeSignature)) {
+            return false;
+        }
+        StrokeSignature other = (StrokeSignature) obj;
+        return width == other.width && height == other.height
+                && strokes.equals(other.strokes);
+    }
+
+    @Override
+    public String toString() {
+        return "StrokeSignature{width=" + width + ", height=" + height
+                + ", strokes=" + strokes + "}";
+    }
+
+}
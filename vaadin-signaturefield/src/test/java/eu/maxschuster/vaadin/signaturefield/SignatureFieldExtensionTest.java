@@ -0,0 +1,485 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield;
+
+import com.vaadin.server.ClientMethodInvocation;
+import com.vaadin.server.ServerRpcManager;
+import com.vaadin.server.ServerRpcMethodInvocation;
+import com.vaadin.server.StreamVariable;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.tests.design.TestDeploymentConfiguration;
+import com.vaadin.tests.design.TestVaadinService;
+import com.vaadin.ui.JavaScript.JavaScriptCallbackRpc;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonValue;
+import eu.maxschuster.vaadin.signaturefield.shared.TransportMode;
+import eu.maxschuster.vaadin.signaturefield.stroke.Stroke;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokeCodec;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokePoint;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokeSignature;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the protocol between the client-side and the
+ * {@link SignatureFieldExtension} by calling its javascript functions like
+ * the framework does.
+ */
+public class SignatureFieldExtensionTest {
+
+    /**
+     * A 1x1 PNG image
+     */
+    static final String PNG = "data:image/png;base64,"
+            + "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mNk"
+            + "YAAAAAYAAjCB0C8AAAAASUVORK5CYII=";
+
+    private VaadinSession session;
+
+    private UI ui;
+
+    private SignatureField field;
+
+    private SignatureFieldExtension extension;
+
+    @Before
+    public void setUp() {
+        VaadinService service = new TestVaadinService(
+                new TestDeploymentConfiguration());
+        VaadinService.setCurrent(service);
+        final Lock lock = new ReentrantLock();
+        session = new VaadinSession(service) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Lock getLockInstance() {
+                return lock;
+            }
+
+        };
+        session.lock();
+        VaadinSession.setCurrent(session);
+        ui = new UI() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void init(VaadinRequest request) {
+            }
+
+        };
+        ui.setSession(session);
+        ui.doInit(createProxy(VaadinRequest.class), 0, null);
+        session.addUI(ui);
+        UI.setCurrent(ui);
+        field = new SignatureField();
+        ui.setContent(field);
+        extension = (SignatureFieldExtension) field.getExtensions()
+                .iterator().next();
+    }
+
+    @After
+    public void tearDown() {
+        session.unlock();
+        CurrentInstance.clearAll();
+    }
+
+    /**
+     * Creates a proxy of the given interface whose methods return the
+     * default value of their return type.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T createProxy(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(),
+                new Class<?>[]{type}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        Class<?> returnType = method.getReturnType();
+                        if (returnType == boolean.class) {
+                            return false;
+                        } else if (returnType == int.class) {
+                            return 0;
+                        } else if (returnType == long.class) {
+                            return 0L;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Calls a javascript function of the extension like the client-side.
+     * {@code null}, {@link String}s, {@link Number}s and
+     * {@link JsonValue}s are supported as arguments.
+     */
+    private void call(String name, Object... arguments) throws Exception {
+        JsonArray array = Json.createArray();
+        for (int i = 0; i < arguments.length; i++) {
+            Object argument = arguments[i];
+            if (argument == null) {
+                array.set(i, Json.createNull());
+            } else if (argument instanceof String) {
+                array.set(i, (String) argument);
+            } else if (argument instanceof Number) {
+                array.set(i, ((Number) argument).doubleValue());
+            } else {
+                array.set(i, (JsonValue) argument);
+            }
+        }
+        ServerRpcMethodInvocation invocation = new ServerRpcMethodInvocation(
+                extension.getConnectorId(), JavaScriptCallbackRpc.class,
+                "call", 2);
+        invocation.setParameters(new Object[]{name, array});
+        ServerRpcManager.applyInvocation(extension, invocation);
+    }
+
+    /**
+     * Records the status, headers and body written to a
+     * {@link VaadinResponse}.
+     */
+    private static class ResponseRecorder implements InvocationHandler {
+
+        private int status = 200;
+
+        private final Map<String, String> headers
+                = new HashMap<String, String>();
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("setStatus") || name.equals("sendError")) {
+                status = (Integer) args[0];
+            } else if (name.equals("setHeader")) {
+                headers.put((String) args[0], (String) args[1]);
+            } else if (name.equals("getOutputStream")) {
+                return body;
+            }
+            return null;
+        }
+
+    }
+
+    /**
+     * Requests the lazily loaded image of the extension.
+     */
+    private ResponseRecorder requestImage(String path, String etag)
+            throws IOException {
+        final Map<String, String> requestHeaders
+                = new HashMap<String, String>();
+        if (etag != null) {
+            requestHeaders.put("If-None-Match", etag);
+        }
+        VaadinRequest request = (VaadinRequest) Proxy.newProxyInstance(
+                VaadinRequest.class.getClassLoader(),
+                new Class<?>[]{VaadinRequest.class}, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        if (method.getName().equals("getHeader")) {
+                            return requestHeaders.get((String) args[0]);
+                        }
+                        return null;
+                    }
+                });
+        ResponseRecorder recorder = new ResponseRecorder();
+        VaadinResponse response = (VaadinResponse) Proxy.newProxyInstance(
+                VaadinResponse.class.getClassLoader(),
+                new Class<?>[]{VaadinResponse.class}, recorder);
+        Assert.assertTrue(extension.handleConnectorRequest(request, response,
+                path));
+        return recorder;
+    }
+
+    /**
+     * Gets the connector request path of the lazily loaded image.
+     */
+    private String getImagePath() {
+        extension.beforeClientResponse(false);
+        String imageUrl = extension.getState(false).imageUrl;
+        Assert.assertNotNull(imageUrl);
+        return imageUrl.substring(imageUrl.indexOf("/image/") + 1);
+    }
+
+    /**
+     * Removes the pending client-side calls of the extension.
+     * @return Names of the called javascript functions
+     */
+    private List<String> retrieveCalls() {
+        List<String> names = new ArrayList<String>();
+        for (ClientMethodInvocation invocation
+                : extension.retrievePendingRpcCalls()) {
+            names.add((String) invocation.getParameters()[0]);
+        }
+        return names;
+    }
+
+    private static Stroke createStroke(int y) {
+        List<StrokePoint> points = new ArrayList<StrokePoint>();
+        for (int i = 0; i <= 10; i++) {
+            points.add(new StrokePoint(10 + i * 5, y, 1000 + i * 16, .5));
+        }
+        return new Stroke(points);
+    }
+
+    @Test
+    public void testMalformedBinarySignatureIsIgnored() throws Exception {
+        extension.setTransportMode(TransportMode.BINARY);
+        call("fireSignatureChange", PNG, 0, 0, "c1.1.a");
+        byte[] bytes = extension.getSignatureBytes();
+        Assert.assertNotNull(bytes);
+        String version = extension.getState(false).signatureVersion;
+
+        call("fireSignatureChange", "data:image/png;base64,%%%", 5, 5,
+                "c1.2.b");
+        Assert.assertSame(bytes, extension.getSignatureBytes());
+        Assert.assertEquals("c1.1.a", extension.getSignatureToken());
+        Assert.assertEquals(0, extension.getSignatureOffsetX());
+        Assert.assertEquals(version,
+                extension.getState(false).signatureVersion);
+    }
+
+    @Test
+    public void testEmptyBinaryUploadFails() throws Exception {
+        extension.setTransportMode(TransportMode.BINARY);
+        extension.beforeClientResponse(false);
+        StreamVariable streamVariable = ui.getConnectorTracker()
+                .getStreamVariable(extension.getConnectorId(), "signature");
+        streamVariable.getOutputStream().close();
+        streamVariable.streamingFinished(null);
+        retrieveCalls();
+
+        call("fireBinaryUploaded", 0, 0, "c1.1.a");
+        Assert.assertNull(extension.getSignatureBytes());
+        Assert.assertNull(extension.getSignatureToken());
+        Assert.assertTrue(retrieveCalls().contains("binaryUploadFailed"));
+    }
+
+    @Test
+    public void testDuplicateTokenIsIgnored() throws Exception {
+        final int[] events = new int[1];
+        extension.addSignatureChangeListener(
+                new SignatureFieldExtension.SignatureChangeListener() {
+
+            @Override
+            public void signatureChange(
+                    SignatureFieldExtension.SignatureChangeEvent event) {
+                events[0]++;
+            }
+        });
+        call("fireSignatureChange", PNG, 0, 0, "c1.10.a");
+        Assert.assertEquals(1, events[0]);
+        Assert.assertEquals(PNG, field.getValue());
+        Assert.assertEquals("c1.10.a", extension.getSignatureToken());
+
+        call("fireSignatureChange", PNG, 0, 0, "c1.10.a");
+        Assert.assertEquals(1, events[0]);
+
+        call("fireSignatureChange", PNG, 0, 0, "c2.20.b");
+        Assert.assertEquals(2, events[0]);
+
+        call("fireSignatureChange", null, 0, 0, null);
+        Assert.assertEquals(3, events[0]);
+        Assert.assertNull(field.getValue());
+        Assert.assertNull(extension.getSignatureToken());
+    }
+
+    @Test
+    public void testServerSideVersions() {
+        extension.setSignature(PNG);
+        String version = extension.getState(false).signatureVersion;
+        Assert.assertNotNull(version);
+        Assert.assertTrue(retrieveCalls().contains("setSignature"));
+
+        extension.setSignature(PNG + "=");
+        String nextVersion = extension.getState(false).signatureVersion;
+        Assert.assertNotNull(nextVersion);
+        Assert.assertNotEquals(version, nextVersion);
+
+        extension.setSignature(null);
+        Assert.assertNull(extension.getState(false).signatureVersion);
+
+        // Versions of other extensions must not collide, because the
+        // client-side caches signatures by their version
+        SignatureField other = new SignatureField();
+        other.setValue(PNG);
+        SignatureFieldExtension otherExtension = (SignatureFieldExtension)
+                other.getExtensions().iterator().next();
+        Assert.assertNotEquals(version,
+                otherExtension.getState(false).signatureVersion);
+    }
+
+    @Test
+    public void testClientSideVersionIsNotSentBack() throws Exception {
+        call("fireSignatureChange", PNG, 0, 0, "c1.10.a");
+        Assert.assertEquals("c1.10.a",
+                extension.getState(false).signatureVersion);
+        retrieveCalls();
+
+        // Rendered from scratch, e.g. after a reattach
+        extension.beforeClientResponse(true);
+        Assert.assertFalse(retrieveCalls().contains("setSignature"));
+
+        extension.setSignature(PNG + "=");
+        extension.beforeClientResponse(true);
+        Assert.assertTrue(retrieveCalls().contains("setSignature"));
+    }
+
+    @Test
+    public void testLazyImageRequest() throws Exception {
+        extension.setReadOnly(true);
+        extension.setLazyLoadEnabled(true);
+        extension.setSignature(PNG);
+        String path = getImagePath();
+
+        ResponseRecorder response = requestImage(path, null);
+        Assert.assertEquals(200, response.status);
+        Assert.assertArrayEquals(Base64.getDecoder().decode(
+                PNG.substring(PNG.indexOf(',') + 1)),
+                response.body.toByteArray());
+        Assert.assertEquals("private, max-age=31536000, immutable",
+                response.headers.get("Cache-Control"));
+        String etag = response.headers.get("ETag");
+        Assert.assertNotNull(etag);
+
+        response = requestImage(path, etag);
+        Assert.assertEquals(304, response.status);
+        Assert.assertEquals(0, response.body.size());
+    }
+
+    @Test
+    public void testOutdatedImageRequest() throws Exception {
+        extension.setReadOnly(true);
+        extension.setLazyLoadEnabled(true);
+        extension.setSignature(PNG);
+        String path = getImagePath();
+        extension.setSignature(PNG + "=");
+        String newPath = getImagePath();
+        Assert.assertNotEquals(path, newPath);
+
+        ResponseRecorder response = requestImage(path, null);
+        Assert.assertEquals(404, response.status);
+        Assert.assertEquals(0, response.body.size());
+        Assert.assertNull(response.headers.get("ETag"));
+
+        Assert.assertEquals(200, requestImage(newPath, null).status);
+        Assert.assertEquals(404, requestImage("image/unknown.png", null)
+                .status);
+    }
+
+    @Test
+    public void testImageUrlIdentifiesContent() {
+        extension.setReadOnly(true);
+        extension.setLazyLoadEnabled(true);
+        extension.setSignature(PNG);
+        String path = getImagePath();
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+
+        // Urls restart in every session, only the file name tells images
+        // apart. Equal images share it, so they can share a cache entry.
+        SignatureField other = new SignatureField();
+        other.setValue(PNG);
+        other.setReadOnly(true);
+        other.setLazyLoadEnabled(true);
+        ui.setContent(other);
+        extension = (SignatureFieldExtension) other.getExtensions()
+                .iterator().next();
+        String otherPath = getImagePath();
+        Assert.assertEquals(fileName,
+                otherPath.substring(otherPath.lastIndexOf('/') + 1));
+
+        extension.setSignature(PNG + "=");
+        otherPath = getImagePath();
+        Assert.assertFalse(otherPath.endsWith("/" + fileName));
+    }
+
+    @Test
+    public void testImageRequestWithoutLazyImage() throws Exception {
+        extension.setSignature(PNG);
+        VaadinRequest request = createProxy(VaadinRequest.class);
+        VaadinResponse response = createProxy(VaadinResponse.class);
+        Assert.assertFalse(extension.handleConnectorRequest(request,
+                response, "image/unknown.png"));
+    }
+
+    @Test
+    public void testStrokeTransport() throws Exception {
+        extension.setTransportMode(TransportMode.STROKES);
+        final List<Stroke> added = new ArrayList<Stroke>();
+        extension.addStrokeAddedListener(
+                new SignatureFieldExtension.StrokeAddedListener() {
+
+            @Override
+            public void strokeAdded(
+                    SignatureFieldExtension.StrokeAddedEvent event) {
+                added.add(event.getStroke());
+            }
+        });
+        Stroke first = StrokeCodec.decodeStroke(
+                StrokeCodec.encodeStroke(createStroke(20)));
+        Stroke second = StrokeCodec.decodeStroke(
+                StrokeCodec.encodeStroke(createStroke(40)));
+
+        // Immediate mode sends only the new stroke
+        call("fireStrokeAdded", 300, 100, StrokeCodec.encodeStroke(first));
+        call("fireStrokeAdded", 300, 100, StrokeCodec.encodeStroke(second));
+        StrokeSignature strokes = extension.getStrokes();
+        Assert.assertEquals(300, strokes.getWidth());
+        Assert.assertEquals(100, strokes.getHeight());
+        Assert.assertEquals(Arrays.asList(first, second),
+                strokes.getStrokes());
+        Assert.assertEquals(Arrays.asList(first, second), added);
+
+        // Otherwise all strokes are sent at once
+        call("fireStrokesChange", 600, 200, StrokeCodec.encodeStrokes(
+                Collections.singletonList(second)));
+        strokes = extension.getStrokes();
+        Assert.assertEquals(600, strokes.getWidth());
+        Assert.assertEquals(Collections.singletonList(second),
+                strokes.getStrokes());
+
+        call("fireStrokesChange", 600, 200, null);
+        Assert.assertNull(extension.getStrokes());
+    }
+
+}
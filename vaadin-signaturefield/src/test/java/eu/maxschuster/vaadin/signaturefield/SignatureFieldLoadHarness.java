@@ -0,0 +1,452 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield;
+
+import com.vaadin.server.ClientConnector;
+import com.vaadin.server.ServerRpcManager;
+import com.vaadin.server.Sizeable;
+import com.vaadin.server.ServerRpcMethodInvocation;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.tests.design.TestDeploymentConfiguration;
+import com.vaadin.tests.design.TestVaadinService;
+import com.vaadin.ui.JavaScript.JavaScriptCallbackRpc;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+import com.vaadin.v7.data.Property;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import eu.maxschuster.vaadin.signaturefield.stroke.Stroke;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokePoint;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokeRenderer;
+import eu.maxschuster.vaadin.signaturefield.stroke.StrokeSignature;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Headless load test that simulates many concurrent signing sessions on one
+ * node. Every session has its own {@link VaadinSession}, {@link UI} and
+ * {@link SignatureField}s, and the signature changes are delivered through
+ * the {@link JavaScriptCallbackRpc} of the extension, like the framework does
+ * for requests of the client-side.<br>
+ * <br>
+ * Reports the latency percentiles of a single signature change, the heap
+ * footprint of a session and the GC activity while the changes are
+ * processed. Not a unit test, so it isn't run by surefire. Run it with the
+ * test classpath, e.g.:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) \
+ *     eu.maxschuster.vaadin.signaturefield.SignatureFieldLoadHarness \
+ *     [sessions] [fieldsPerSession] [changesPerField] [threads]
+ * </pre>
+ *
+ * @author Max Schuster
+ */
+public class SignatureFieldLoadHarness {
+
+    /**
+     * Size of the simulated signature fields
+     */
+    private static final int WIDTH = 600;
+
+    private static final int HEIGHT = 200;
+
+    /**
+     * Number of different signature images sent by the sessions
+     */
+    private static final int PAYLOADS = 8;
+
+    private final int sessionCount;
+
+    private final int fieldsPerSession;
+
+    private final int changesPerField;
+
+    private final int threads;
+
+    private final VaadinService service;
+
+    private final List<SimulatedSession> sessions
+            = new ArrayList<SimulatedSession>();
+
+    private final AtomicLong valueChanges = new AtomicLong();
+
+    private String[] payloads;
+
+    public SignatureFieldLoadHarness(int sessionCount, int fieldsPerSession,
+            int changesPerField, int threads) {
+        this.sessionCount = sessionCount;
+        this.fieldsPerSession = fieldsPerSession;
+        this.changesPerField = changesPerField;
+        this.threads = threads;
+        service = new TestVaadinService(new TestDeploymentConfiguration());
+    }
+
+    public static void main(String[] args) throws Exception {
+        SignatureFieldLoadHarness harness = new SignatureFieldLoadHarness(
+                intArgument(args, 0, 1000),
+                intArgument(args, 1, 2),
+                intArgument(args, 2, 20),
+                intArgument(args, 3,
+                        Runtime.getRuntime().availableProcessors()));
+        harness.run();
+    }
+
+    private static int intArgument(String[] args, int index, int fallback) {
+        return args.length > index ? Integer.parseInt(args[index]) : fallback;
+    }
+
+    /**
+     * Creates the sessions, sends the signature changes and prints the
+     * results.
+     *
+     * @throws Exception If the simulation fails
+     */
+    public void run() throws Exception {
+        VaadinService.setCurrent(service);
+        payloads = createPayloads();
+        long payloadBytes = 0;
+        for (String payload : payloads) {
+            payloadBytes += payload.length();
+        }
+        System.out.printf("%d sessions x %d fields x %d changes, "
+                + "%d threads, average payload %d chars%n", sessionCount,
+                fieldsPerSession, changesPerField, threads,
+                payloadBytes / payloads.length);
+
+        long heapBefore = usedHeapAfterGc();
+        for (int i = 0; i < sessionCount; i++) {
+            sessions.add(new SimulatedSession(i));
+        }
+        long heapAfter = usedHeapAfterGc();
+        System.out.printf("Empty session footprint: %,d bytes%n",
+                (heapAfter - heapBefore) / sessionCount);
+
+        long[] latencies = sendChanges();
+
+        long heapLoaded = usedHeapAfterGc();
+        System.out.printf("Session footprint with signatures: %,d bytes%n",
+                (heapLoaded - heapBefore) / sessionCount);
+        System.out.printf("Value changes received: %,d of %,d%n",
+                valueChanges.get(), latencies.length);
+    }
+
+    /**
+     * Sends the signature changes of all sessions from a pool of threads. The
+     * changes of one session are sent one after the other, like a single
+     * client-side would.
+     *
+     * @return Latency of every change in nanoseconds
+     * @throws Exception If a change fails
+     */
+    private long[] sendChanges() throws Exception {
+        final int changesPerSession = fieldsPerSession * changesPerField;
+        final long[] latencies = new long[sessionCount * changesPerSession];
+        final AtomicLong allocatedBytes = new AtomicLong();
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long start = System.nanoTime();
+        try {
+            for (final SimulatedSession session : sessions) {
+                futures.add(executor.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        long allocatedBefore = allocatedBytes(threadBean);
+                        VaadinService.setCurrent(service);
+                        session.sendChanges(latencies,
+                                session.index * changesPerSession);
+                        allocatedBytes.addAndGet(
+                                allocatedBytes(threadBean) - allocatedBefore);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("Throughput: %,.0f changes/s%n",
+                latencies.length / (elapsed / 1e9));
+        System.out.printf("Latency p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, "
+                + "p99.9 %.3f ms, max %.3f ms%n",
+                percentile(latencies, .5), percentile(latencies, .9),
+                percentile(latencies, .99), percentile(latencies, .999),
+                latencies[latencies.length - 1] / 1e6);
+        System.out.printf("GC: %d collections, %d ms%n",
+                gcCount() - gcCountBefore, gcTime() - gcTimeBefore);
+        if (allocatedBytes.get() > 0) {
+            System.out.printf("Allocated: %,d bytes per change%n",
+                    allocatedBytes.get() / latencies.length);
+        }
+        return latencies;
+    }
+
+    /**
+     * Renders signature-like images and encodes them as data urls.
+     *
+     * @return The data urls
+     * @throws IOException If an image couldn't be encoded
+     */
+    private String[] createPayloads() throws IOException {
+        StrokeRenderer renderer = new StrokeRenderer();
+        renderer.setBackgroundColor("#fff");
+        Random random = new Random(42);
+        String[] result = new String[PAYLOADS];
+        for (int p = 0; p < PAYLOADS; p++) {
+            List<Stroke> strokes = new ArrayList<Stroke>();
+            int strokeCount = 3 + random.nextInt(4);
+            for (int s = 0; s < strokeCount; s++) {
+                List<StrokePoint> points = new ArrayList<StrokePoint>();
+                double x = WIDTH * (.1 + .8 * s / strokeCount);
+                double y = HEIGHT * (.3 + .4 * random.nextDouble());
+                long time = 1000;
+                for (int i = 0; i < 40; i++) {
+                    x = Math.min(WIDTH - 1, x + random.nextDouble() * 6);
+                    y = Math.max(1, Math.min(HEIGHT - 1,
+                            y + random.nextGaussian() * 6));
+                    time += 8 + random.nextInt(12);
+                    points.add(new StrokePoint(x, y, time, .5));
+                }
+                strokes.add(new Stroke(points));
+            }
+            byte[] image = renderer.toByteArray(
+                    new StrokeSignature(WIDTH, HEIGHT, strokes),
+                    MimeType.PNG, WIDTH, HEIGHT);
+            result[p] = "data:" + MimeType.PNG.getMimeType() + ";base64,"
+                    + Base64.getEncoder().encodeToString(image);
+        }
+        return result;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memoryBean.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread if the JVM supports it.
+     */
+    private static long allocatedBytes(ThreadMXBean threadBean) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean
+                    = (com.sun.management.ThreadMXBean) threadBean;
+            if (bean.isThreadAllocatedMemorySupported()
+                    && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(
+                        Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Creates a {@link VaadinRequest} without any parameters, which is enough
+     * to initialize a {@link UI}.
+     */
+    private static VaadinRequest createRequest() {
+        return (VaadinRequest) Proxy.newProxyInstance(
+                VaadinRequest.class.getClassLoader(),
+                new Class<?>[]{VaadinRequest.class},
+                new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        Class<?> type = method.getReturnType();
+                        if (type == boolean.class) {
+                            return false;
+                        } else if (type == int.class) {
+                            return 0;
+                        } else if (type == long.class) {
+                            return 0L;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * A session of one signer with its UI and fields.
+     */
+    private class SimulatedSession {
+
+        private final int index;
+
+        private final Lock lock = new ReentrantLock();
+
+        private final VaadinSession session;
+
+        private final UI ui;
+
+        private final List<ClientConnector> extensions
+                = new ArrayList<ClientConnector>();
+
+        SimulatedSession(int index) {
+            this.index = index;
+            session = new VaadinSession(service) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public Lock getLockInstance() {
+                    return lock;
+                }
+
+            };
+            ui = new UI() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void init(VaadinRequest request) {
+                }
+
+            };
+            session.lock();
+            try {
+                ui.setSession(session);
+                ui.doInit(createRequest(), 0, null);
+                session.addUI(ui);
+                VerticalLayout layout = new VerticalLayout();
+                for (int f = 0; f < fieldsPerSession; f++) {
+                    SignatureField field = new SignatureField();
+                    field.setWidth(WIDTH, Sizeable.Unit.PIXELS);
+                    field.setHeight(HEIGHT, Sizeable.Unit.PIXELS);
+                    field.addValueChangeListener(
+                            new Property.ValueChangeListener() {
+
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        public void valueChange(
+                                Property.ValueChangeEvent event) {
+                            valueChanges.incrementAndGet();
+                        }
+                    });
+                    layout.addComponent(field);
+                    extensions.add(field.getExtensions().iterator().next());
+                }
+                ui.setContent(layout);
+            } finally {
+                session.unlock();
+            }
+        }
+
+        /**
+         * Sends all signature changes of this session and stores their
+         * latencies.
+         */
+        void sendChanges(long[] latencies, int offset) {
+            int n = offset;
+            for (int c = 0; c < changesPerField; c++) {
+                for (int f = 0; f < extensions.size(); f++) {
+                    ClientConnector extension = extensions.get(f);
+                    String payload = payloads[(index + f + c) % PAYLOADS];
+                    long start = System.nanoTime();
+                    sendChange(extension, payload,
+                            "c" + index + "." + f + "." + c);
+                    latencies[n++] = System.nanoTime() - start;
+                }
+            }
+        }
+
+        /**
+         * Delivers a signature change like a request of the client-side
+         * does, with the session locked.
+         */
+        private void sendChange(ClientConnector extension, String payload,
+                String token) {
+            JsonArray arguments = Json.createArray();
+            // Every request decodes its own copy of the signature
+            arguments.set(0, new String(payload.toCharArray()));
+            arguments.set(1, 0);
+            arguments.set(2, 0);
+            arguments.set(3, token);
+            ServerRpcMethodInvocation invocation
+                    = new ServerRpcMethodInvocation(extension.getConnectorId(),
+                            JavaScriptCallbackRpc.class, "call", 2);
+            invocation.setParameters(
+                    new Object[]{"fireSignatureChange", arguments});
+            session.lock();
+            try {
+                VaadinSession.setCurrent(session);
+                UI.setCurrent(ui);
+                ServerRpcManager.applyInvocation(extension, invocation);
+            } catch (ServerRpcManager.RpcInvocationException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                session.unlock();
+            }
+        }
+
+    }
+
+}
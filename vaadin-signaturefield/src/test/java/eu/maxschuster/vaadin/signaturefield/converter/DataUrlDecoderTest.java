@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.converter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.channels.Channels;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DataUrlDecoderTest {
+
+    private static byte[] createData(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static String toDataUrl(byte[] data) {
+        return "data:image/png;base64,"
+                + Base64.getEncoder().encodeToString(data);
+    }
+
+    @Test
+    public void testDecodeToStream() throws IOException {
+        for (int length : new int[]{0, 1, 2, 3, 4, 8191, 8192, 8193, 100000}) {
+            byte[] data = createData(length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long written = DataUrlDecoder.decode(toDataUrl(data), out);
+            Assert.assertEquals(length, written);
+            Assert.assertArrayEquals(data, out.toByteArray());
+        }
+    }
+
+    @Test
+    public void testDecodeToChannel() throws IOException {
+        byte[] data = createData(20000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataUrlDecoder.decode(toDataUrl(data), Channels.newChannel(out));
+        Assert.assertArrayEquals(data, out.toByteArray());
+    }
+
+    @Test(expected = MalformedURLException.class)
+    public void testNotBase64() throws IOException {
+        DataUrlDecoder.decode("data:text/plain,hello",
+                new ByteArrayOutputStream());
+    }
+
+    @Test(expected = MalformedURLException.class)
+    public void testIllegalCharacter() throws IOException {
+        DataUrlDecoder.decode("data:image/png;base64,AA*A",
+                new ByteArrayOutputStream());
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.converter;
+
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import java.nio.ByteBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MimeTypeDetectorTest {
+
+    private static final byte[] PNG = {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 13
+    };
+
+    private static final byte[] JPEG = {
+        (byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0, 0, 16
+    };
+
+    private static final byte[] WEBP = {
+        'R', 'I', 'F', 'F', 36, 0, 0, 0, 'W', 'E', 'B', 'P', 'V', 'P', '8', ' '
+    };
+
+    private static final byte[] AVIF = {
+        0, 0, 0, 28, 'f', 't', 'y', 'p', 'a', 'v', 'i', 'f', 0, 0, 0, 0
+    };
+
+    @Test
+    public void testDetectArray() {
+        Assert.assertEquals(MimeType.PNG, MimeTypeDetector.detect(PNG));
+        Assert.assertEquals(MimeType.JPEG, MimeTypeDetector.detect(JPEG));
+        Assert.assertNull(MimeTypeDetector.detect(new byte[]{1, 2, 3}));
+        Assert.assertNull(MimeTypeDetector.detect(new byte[0]));
+        Assert.assertNull(MimeTypeDetector.detect(PNG, 0, 4));
+    }
+
+    @Test
+    public void testDetectWebpAndAvif() {
+        Assert.assertEquals(MimeType.WEBP, MimeTypeDetector.detect(WEBP));
+        Assert.assertEquals(MimeType.AVIF, MimeTypeDetector.detect(AVIF));
+        Assert.assertNull(MimeTypeDetector.detect(WEBP, 0, 10));
+        ByteBuffer direct = ByteBuffer.allocateDirect(AVIF.length);
+        direct.put(AVIF).flip();
+        Assert.assertEquals(MimeType.AVIF, MimeTypeDetector.detect(direct));
+    }
+
+    @Test
+    public void testDetectOffset() {
+        byte[] data = new byte[PNG.length + 3];
+        System.arraycopy(PNG, 0, data, 3, PNG.length);
+        Assert.assertEquals(MimeType.PNG,
+                MimeTypeDetector.detect(data, 3, PNG.length));
+    }
+
+    @Test
+    public void testDetectByteBuffer() {
+        ByteBuffer direct = ByteBuffer.allocateDirect(JPEG.length);
+        direct.put(JPEG).flip();
+        Assert.assertEquals(MimeType.JPEG, MimeTypeDetector.detect(direct));
+        Assert.assertEquals(0, direct.position());
+        Assert.assertEquals(MimeType.PNG,
+                MimeTypeDetector.detect(ByteBuffer.wrap(PNG)));
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.converter;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PngOptimizerTest {
+
+    private static BufferedImage createSignature(boolean antialiasing) {
+        BufferedImage image = new BufferedImage(300, 100,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing
+                ? RenderingHints.VALUE_ANTIALIAS_ON
+                : RenderingHints.VALUE_ANTIALIAS_OFF);
+        g.setColor(Color.BLACK);
+        g.setStroke(new BasicStroke(2.5f));
+        g.drawLine(20, 80, 120, 20);
+        g.drawOval(130, 30, 60, 40);
+        g.drawLine(200, 50, 280, 60);
+        g.dispose();
+        return image;
+    }
+
+    private static byte[] toPng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testMonochrome() throws IOException {
+        BufferedImage original = createSignature(false);
+        byte[] png = toPng(original);
+        byte[] optimized = new PngOptimizer().optimize(png);
+        Assert.assertTrue(optimized.length < png.length);
+
+        BufferedImage result = ImageIO.read(
+                new ByteArrayInputStream(optimized));
+        Assert.assertTrue(result.getColorModel() instanceof IndexColorModel);
+        Assert.assertEquals(1, result.getColorModel().getPixelSize());
+        for (int y = 0; y < original.getHeight(); y++) {
+            for (int x = 0; x < original.getWidth(); x++) {
+                Assert.assertEquals(original.getRGB(x, y),
+                        result.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testQuantized() throws IOException {
+        BufferedImage original = createSignature(true);
+        byte[] png = toPng(original);
+        byte[] optimized = new PngOptimizer(4).optimize(png);
+        Assert.assertTrue(optimized.length < png.length);
+
+        BufferedImage result = ImageIO.read(
+                new ByteArrayInputStream(optimized));
+        Assert.assertEquals(2, result.getColorModel().getPixelSize());
+        Assert.assertEquals(0, result.getRGB(0, 0) >>> 24);
+        for (int y = 0; y < original.getHeight(); y++) {
+            for (int x = 0; x < original.getWidth(); x++) {
+                int expected = original.getRGB(x, y) >>> 24;
+                int actual = result.getRGB(x, y) >>> 24;
+                Assert.assertTrue(Math.abs(expected - actual) <= 128);
+            }
+        }
+    }
+
+    @Test
+    public void testPassThrough() throws IOException {
+        byte[] jpeg = {(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0};
+        Assert.assertSame(jpeg, new PngOptimizer().optimize(jpeg));
+        Assert.assertNull(new PngOptimizer().optimize(null));
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        byte[] png = toPng(createSignature(true));
+        PngOptimizer optimizer = new PngOptimizer();
+        Assert.assertArrayEquals(optimizer.optimize(png),
+                optimizer.optimizeAsync(png).get());
+    }
+
+}
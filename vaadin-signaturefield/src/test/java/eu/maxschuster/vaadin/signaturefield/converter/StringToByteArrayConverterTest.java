@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.converter;
+
+import com.vaadin.v7.data.util.converter.Converter.ConversionException;
+import eu.maxschuster.dataurl.DataUrl;
+import eu.maxschuster.dataurl.DataUrlEncoding;
+import eu.maxschuster.dataurl.IDataUrlSerializer;
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import java.net.MalformedURLException;
+import java.util.Locale;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StringToByteArrayConverterTest {
+
+    /**
+     * A JPEG data url whose payload isn't valid Base64
+     */
+    private static final String CORRUPT_JPEG = "data:image/jpeg;base64,%%%";
+
+    @Test
+    public void testWrongMimeTypeIsRejectedBeforeDecoding() {
+        StringToByteArrayConverter converter
+                = new StringToByteArrayConverter(MimeType.PNG);
+        try {
+            converter.convertToModel(CORRUPT_JPEG, byte[].class,
+                    Locale.ENGLISH);
+            Assert.fail("Expected a ConversionException");
+        } catch (ConversionException e) {
+            Assert.assertNull(e.getCause());
+            Assert.assertTrue(e.getMessage(),
+                    e.getMessage().contains("image/jpeg"));
+            Assert.assertTrue(e.getMessage(),
+                    e.getMessage().contains("image/png"));
+        }
+    }
+
+    @Test
+    public void testCustomHeaderMatching() {
+        final byte[] data = {1, 2, 3};
+        IDataUrlSerializer serializer = new IDataUrlSerializer() {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public String serialize(DataUrl dataUrl) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public DataUrl unserialize(String dataUrl)
+                    throws MalformedURLException {
+                return new DataUrl(data, DataUrlEncoding.BASE64, "image/png");
+            }
+        };
+        StringToByteArrayConverter converter = new StringToByteArrayConverter(
+                serializer, MimeType.PNG) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean matchMimeType(String value, MimeType mimeType) {
+                return value.startsWith("png:");
+            }
+        };
+        Assert.assertSame(data, converter.convertToModel("png:AQID",
+                byte[].class, Locale.ENGLISH));
+    }
+
+}
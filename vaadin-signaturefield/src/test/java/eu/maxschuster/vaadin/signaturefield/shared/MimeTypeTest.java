@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.shared;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MimeTypeTest {
+
+    @Test
+    public void testFromMimeType() {
+        Assert.assertEquals(MimeType.PNG, MimeType.fromMimeType("image/png"));
+        Assert.assertEquals(MimeType.JPEG, MimeType.fromMimeType("image/jpeg"));
+        Assert.assertNull(MimeType.fromMimeType("image/gif"));
+        Assert.assertNull(MimeType.fromMimeType(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValueOfMimeTypeUnknown() {
+        MimeType.valueOfMimeType("image/gif");
+    }
+
+    @Test
+    public void testFromDataUrl() {
+        Assert.assertEquals(MimeType.PNG,
+                MimeType.fromDataUrl("data:image/png;base64,iVBORw0KGgo="));
+        Assert.assertEquals(MimeType.JPEG,
+                MimeType.fromDataUrl("data:image/jpeg,abc"));
+        Assert.assertNull(MimeType.fromDataUrl("data:image/pngx;base64,"));
+        Assert.assertNull(MimeType.fromDataUrl("data:image/png"));
+        Assert.assertNull(MimeType.fromDataUrl("image/png;base64,"));
+        Assert.assertNull(MimeType.fromDataUrl(null));
+    }
+
+}
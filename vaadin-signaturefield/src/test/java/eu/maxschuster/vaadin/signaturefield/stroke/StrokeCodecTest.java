@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.stroke;
+
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StrokeCodecTest {
+
+    @Test
+    public void testRoundTrip() {
+        List<Stroke> strokes = Arrays.asList(
+                new Stroke(Arrays.asList(
+                        new StrokePoint(1.5, 2, 1000, 0.5),
+                        new StrokePoint(3, 4.5, 1016, 0.75))),
+                new Stroke(Arrays.asList(
+                        new StrokePoint(10, 20, 2000, 0))));
+        JsonArray json = StrokeCodec.encodeStrokes(strokes);
+        Assert.assertEquals(9, json.getArray(0).length());
+        Assert.assertEquals(16, json.getArray(0).getNumber(7), 0);
+        Assert.assertEquals(strokes, StrokeCodec.decodeStrokes(json));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedStroke() {
+        JsonArray json = Json.createArray();
+        json.set(0, 1000);
+        json.set(1, 1);
+        json.set(2, 2);
+        json.set(3, 0);
+        StrokeCodec.decodeStroke(json);
+    }
+
+}
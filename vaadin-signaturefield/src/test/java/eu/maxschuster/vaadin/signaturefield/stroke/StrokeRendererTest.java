@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Max Schuster.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.maxschuster.vaadin.signaturefield.stroke;
+
+import eu.maxschuster.vaadin.signaturefield.shared.MimeType;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StrokeRendererTest {
+
+    private StrokeSignature createSignature() {
+        List<StrokePoint> points = new ArrayList<StrokePoint>();
+        for (int i = 0; i <= 20; i++) {
+            points.add(new StrokePoint(10 + i * 4, 25, 1000 + i * 16, 0));
+        }
+        return new StrokeSignature(100, 50,
+                Collections.singletonList(new Stroke(points)));
+    }
+
+    @Test
+    public void testRenderLine() {
+        StrokeRenderer renderer = new StrokeRenderer();
+        renderer.setBackgroundColor("#fff");
+        BufferedImage image = renderer.render(createSignature(), 100, 50);
+        Assert.assertEquals(0xff000000, image.getRGB(50, 25));
+        Assert.assertEquals(0xffffffff, image.getRGB(50, 5));
+        Assert.assertEquals(0xffffffff, image.getRGB(95, 25));
+    }
+
+    @Test
+    public void testRenderScaled() {
+        StrokeRenderer renderer = new StrokeRenderer();
+        BufferedImage image = renderer.render(createSignature(), 200, 100);
+        Assert.assertEquals(0xff000000, image.getRGB(100, 50));
+        Assert.assertEquals(0, image.getRGB(100, 10));
+    }
+
+    @Test
+    public void testReuseClearsBuffer() {
+        StrokeRenderer renderer = new StrokeRenderer();
+        renderer.render(createSignature(), 100, 50);
+        BufferedImage image = renderer.render(new StrokeSignature(100, 50,
+                Collections.<Stroke>emptyList()), 100, 50);
+        Assert.assertEquals(0, image.getRGB(50, 25));
+    }
+
+    @Test
+    public void testWritePngAndJpeg() throws IOException {
+        StrokeRenderer renderer = new StrokeRenderer();
+        for (MimeType mimeType : new MimeType[]{MimeType.PNG, MimeType.JPEG}) {
+            byte[] data = renderer.toByteArray(createSignature(), mimeType,
+                    100, 50);
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+            Assert.assertEquals(100, image.getWidth());
+            Assert.assertEquals(50, image.getHeight());
+        }
+    }
+
+    @Test
+    public void testParseColor() {
+        Assert.assertEquals(0xff120a8f, StrokeRenderer.parseColor("#120a8f"));
+        Assert.assertEquals(0xffffffff, StrokeRenderer.parseColor("#fff"));
+        Assert.assertEquals(0x00ffffff,
+                StrokeRenderer.parseColor("rgba(255,255,255,0)"));
+        Assert.assertEquals(0xff0000ff,
+                StrokeRenderer.parseColor("rgb(0, 0, 255)"));
+    }
+
+}